@@ -14,6 +14,15 @@ create table users (
 
 select *from users;
 
+create index idx_users_token_expired_at on users (token_expired_at);
+
+create table revoked_tokens (
+    signature varchar(100) not null,
+    expired_at BIGINT not null,
+    primary key (signature),
+    index idx_revoked_tokens_expired_at (expired_at)
+) ENGINE InnoDB;
+
 
 desc users;
 
@@ -32,6 +41,30 @@ select *from contacts;
 
 desc contacts;
 
+-- only for app.contact-search.engine=fulltext. Stopwords must be off while the indexes are built:
+-- with the default list the ngram parser drops every token containing one ("a", "i", ...),
+-- so "dada" or "salah" would no longer match. The setting is read when an index is created.
+set session innodb_ft_enable_stopword = OFF;
+
+alter table contacts
+    add fulltext index ft_contacts_name (first_name, last_name) with parser ngram,
+    add fulltext index ft_contacts_email (email) with parser ngram,
+    add fulltext index ft_contacts_phone (phone) with parser ngram;
+
+alter table contacts
+    add email_lower varchar(100),
+    add phone_digits varchar(100),
+    add phone_digits_reversed varchar(100),
+    add index contacts_email_lower_idx (username, email_lower),
+    add index contacts_phone_digits_idx (username, phone_digits),
+    add index contacts_phone_digits_reversed_idx (username, phone_digits_reversed);
+
+alter table contacts
+    add email_lower_reversed varchar(100),
+    add index contacts_email_lower_reversed_idx (username, email_lower_reversed);
+
+alter table contacts add version bigint not null default 0;
+
 create table addresses(
     id varchar(100) not null,
     contact_id varchar(100) not null,
@@ -44,6 +77,8 @@ create table addresses(
     foreign key fk_contact_addresses (contact_id) references contacts(id)
 )engine InnoDB;
 
+alter table addresses add version bigint not null default 0;
+
 select *from addresses;
 
 delete from addresses;
@@ -0,0 +1,93 @@
+package belajar_restful.belajar_spring_restful_api.benchmark;
+
+import belajar_restful.belajar_spring_restful_api.util.UuidV7;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Batched inserts into a scratch table shaped like {@code contacts}, keyed either by random
+ * UUIDs or by {@link UuidV7}. The table keeps growing over the run, so the random scheme
+ * pays more for page splits and buffer pool misses the longer it goes.
+ * <p>
+ * Needs the database from application.properties; override with
+ * {@code -Dbenchmark.jdbc.url}, {@code -Dbenchmark.jdbc.username} and {@code -Dbenchmark.jdbc.password}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+public class IdInsertBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Param({"random", "v7"})
+    private String scheme;
+
+    private Supplier<String> ids;
+
+    private Connection connection;
+
+    private PreparedStatement insert;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        ids = "v7".equals(scheme) ? UuidV7::generate : () -> UUID.randomUUID().toString();
+
+        connection = DriverManager.getConnection(
+                System.getProperty("benchmark.jdbc.url", "jdbc:mysql://localhost:3306/belajar_spring_restful_api?rewriteBatchedStatements=true"),
+                System.getProperty("benchmark.jdbc.username", "root"),
+                System.getProperty("benchmark.jdbc.password", ""));
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("drop table if exists id_benchmark");
+            statement.execute("create table id_benchmark(id varchar(100) not null, first_name varchar(100) not null, "
+                    + "email varchar(100), primary key (id)) ENGINE InnoDB");
+        }
+        connection.setAutoCommit(false);
+        insert = connection.prepareStatement("insert into id_benchmark (id, first_name, email) values (?, ?, ?)");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void insert() throws SQLException {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            insert.setString(1, ids.get());
+            insert.setString(2, "Benchmark");
+            insert.setString(3, "benchmark@example.com");
+            insert.addBatch();
+        }
+        insert.executeBatch();
+        connection.commit();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        insert.close();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("drop table if exists id_benchmark");
+        }
+        connection.close();
+    }
+}
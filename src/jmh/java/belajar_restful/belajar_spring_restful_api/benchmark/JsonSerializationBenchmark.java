@@ -0,0 +1,99 @@
+package belajar_restful.belajar_spring_restful_api.benchmark;
+
+import belajar_restful.belajar_spring_restful_api.model.AddressResponse;
+import belajar_restful.belajar_spring_restful_api.model.ContactResponse;
+import belajar_restful.belajar_spring_restful_api.model.PagingResponse;
+import belajar_restful.belajar_spring_restful_api.model.WebResponse;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes a search page of contacts and an address list the way the controllers return
+ * them, with a plain mapper and with the application's settings (Blackbird, non-null
+ * inclusion). Payload sizes are printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JsonSerializationBenchmark {
+
+    @Param({"default", "tuned"})
+    private String mapper;
+
+    private ObjectMapper objectMapper;
+
+    private WebResponse<List<ContactResponse>> search;
+
+    private WebResponse<List<AddressResponse>> addresses;
+
+    @Setup
+    public void setUp() throws Exception {
+        objectMapper = "tuned".equals(mapper)
+                ? JsonMapper.builder()
+                        .addModule(new BlackbirdModule())
+                        .serializationInclusion(JsonInclude.Include.NON_NULL)
+                        .build()
+                : new ObjectMapper();
+
+        List<ContactResponse> contacts = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            contacts.add(ContactResponse.builder()
+                    .id("0190a1b2-c3d4-7e5f-8a9b-0c1d2e3f4a" + (10 + i))
+                    .firstName("Contact " + i)
+                    .lastName(i % 2 == 0 ? "Khannedy" : null)
+                    .email("contact" + i + "@example.com")
+                    .phone(i % 3 == 0 ? null : "0812345678" + i)
+                    .build());
+        }
+        search = WebResponse.<List<ContactResponse>>builder()
+                .data(contacts)
+                .paging(PagingResponse.builder().currentPage(0).totalPage(10).size(10).countMode("exact").build())
+                .build();
+
+        List<AddressResponse> addressList = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            addressList.add(AddressResponse.builder()
+                    .id("0190a1b2-c3d4-7e5f-8a9b-0c1d2e3f4b" + (10 + i))
+                    .street(i % 2 == 0 ? "Jalan " + i : null)
+                    .city("Jakarta")
+                    .province(null)
+                    .country("Indonesia")
+                    .postalCode(i % 2 == 0 ? "12345" : null)
+                    .build());
+        }
+        addresses = WebResponse.<List<AddressResponse>>builder().data(addressList).build();
+
+        System.out.printf("%n%s mapper: search %d bytes, address list %d bytes%n", mapper,
+                objectMapper.writeValueAsBytes(search).length, objectMapper.writeValueAsBytes(addresses).length);
+    }
+
+    @Benchmark
+    public byte[] search() throws Exception {
+        return objectMapper.writeValueAsBytes(search);
+    }
+
+    @Benchmark
+    public byte[] addressList() throws Exception {
+        return objectMapper.writeValueAsBytes(addresses);
+    }
+}
@@ -0,0 +1,195 @@
+package belajar_restful.belajar_spring_restful_api.benchmark;
+
+import belajar_restful.belajar_spring_restful_api.BelajarSpringResTfulApiApplication;
+import belajar_restful.belajar_spring_restful_api.entity.Contact;
+import belajar_restful.belajar_spring_restful_api.entity.User;
+import belajar_restful.belajar_spring_restful_api.repository.ContactRepository;
+import belajar_restful.belajar_spring_restful_api.repository.UserRepository;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closed-loop HTTP load test of {@code GET /api/contacts}, run once with platform request
+ * threads and once with virtual threads. JMH does not fit here: the point is how the server
+ * behaves with more concurrent clients than Tomcat has platform threads.
+ * <p>
+ * Needs the database from application.properties. Arguments (all optional):
+ * {@code --clients 1000 --warmup 10 --duration 30}, durations in seconds.
+ */
+public class ThreadModeLoadTest {
+
+    private static final String USERNAME = "load-test";
+
+    private static final String TOKEN = "load-test-token";
+
+    public static void main(String[] args) throws Exception {
+        int clients = argument(args, "--clients", 1000);
+        Duration warmup = Duration.ofSeconds(argument(args, "--warmup", 10));
+        Duration duration = Duration.ofSeconds(argument(args, "--duration", 30));
+
+        List<String> results = new ArrayList<>();
+        for (boolean virtual : new boolean[]{false, true}) {
+            results.add(run(virtual, clients, warmup, duration));
+        }
+
+        System.out.printf("%n%-10s %8s %10s %10s %10s %10s %8s%n",
+                "threads", "clients", "req/s", "p50 ms", "p99 ms", "max ms", "errors");
+        results.forEach(System.out::println);
+    }
+
+    private static String run(boolean virtual, int clients, Duration warmup, Duration duration) throws Exception {
+        // passed as arguments so they win over application.properties
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(BelajarSpringResTfulApiApplication.class)
+                .run("--server.port=0",
+                        "--spring.threads.virtual.enabled=" + virtual,
+                        "--app.rate-limit.enabled=false",
+                        "--logging.level.root=WARN")) {
+            seed(context);
+            try {
+                int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+                URI uri = URI.create("http://localhost:" + port + "/api/contacts?name=load");
+                return measure(virtual, clients, uri, warmup, duration);
+            } finally {
+                clean(context);
+            }
+        }
+    }
+
+    private static String measure(boolean virtual, int clients, URI uri, Duration warmup, Duration duration) throws Exception {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("X-API-TOKEN", TOKEN)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+
+        long measureFrom = System.nanoTime() + warmup.toNanos();
+        long measureUntil = measureFrom + duration.toNanos();
+
+        List<Future<ClientResult>> futures = new ArrayList<>(clients);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                futures.add(executor.submit(() -> runClient(httpClient, request, measureFrom, measureUntil)));
+            }
+        }
+
+        long[] latencies = new long[0];
+        long errors = 0;
+        for (Future<ClientResult> future : futures) {
+            ClientResult result = future.get();
+            int offset = latencies.length;
+            latencies = Arrays.copyOf(latencies, offset + result.count());
+            System.arraycopy(result.latencies(), 0, latencies, offset, result.count());
+            errors += result.errors();
+        }
+        Arrays.sort(latencies);
+
+        return String.format("%-10s %8d %10.0f %10.1f %10.1f %10.1f %8d",
+                virtual ? "virtual" : "platform",
+                clients,
+                latencies.length / (double) duration.toSeconds(),
+                percentile(latencies, 0.50),
+                percentile(latencies, 0.99),
+                percentile(latencies, 1.0),
+                errors);
+    }
+
+    private static ClientResult runClient(HttpClient httpClient, HttpRequest request, long measureFrom, long measureUntil) {
+        long[] latencies = new long[1024];
+        int count = 0;
+        long errors = 0;
+
+        long now;
+        while ((now = System.nanoTime()) < measureUntil) {
+            boolean ok;
+            try {
+                ok = httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+            } catch (Exception e) {
+                ok = false;
+            }
+            long latency = System.nanoTime() - now;
+
+            if (now < measureFrom) {
+                continue;
+            }
+            if (!ok) {
+                errors++;
+                continue;
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latency;
+        }
+        return new ClientResult(latencies, count, errors);
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private static void seed(ConfigurableApplicationContext context) {
+        clean(context);
+
+        User user = new User();
+        user.setUsername(USERNAME);
+        user.setName("Load Test");
+        user.setPassword("-");
+        user.setToken(TOKEN);
+        user.setTokenExpiredAt(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1));
+        context.getBean(UserRepository.class).save(user);
+
+        ContactRepository contactRepository = context.getBean(ContactRepository.class);
+        for (int i = 0; i < 100; i++) {
+            Contact contact = new Contact();
+            contact.setId(UUID.randomUUID().toString());
+            contact.setUser(user);
+            contact.setFirstName("load" + i);
+            contact.setEmail("load" + i + "@example.com");
+            contact.setPhone("0812" + i);
+            contactRepository.save(contact);
+        }
+    }
+
+    private static void clean(ConfigurableApplicationContext context) {
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        userRepository.findById(USERNAME).ifPresent(user -> {
+            ContactRepository contactRepository = context.getBean(ContactRepository.class);
+            contactRepository.deleteAll(contactRepository.findAll((root, query, builder) -> builder.equal(root.get("user"), user)));
+            userRepository.delete(user);
+        });
+    }
+
+    private static int argument(String[] args, String name, int defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(name)) {
+                return Integer.parseInt(args[i + 1]);
+            }
+        }
+        return defaultValue;
+    }
+
+    private record ClientResult(long[] latencies, int count, long errors) {
+    }
+}
@@ -0,0 +1,130 @@
+package belajar_restful.belajar_spring_restful_api.benchmark;
+
+import belajar_restful.belajar_spring_restful_api.entity.User;
+import belajar_restful.belajar_spring_restful_api.repository.UserRepository;
+import belajar_restful.belajar_spring_restful_api.repository.UserSession;
+import belajar_restful.belajar_spring_restful_api.resolver.UserArgumentResolver;
+import belajar_restful.belajar_spring_restful_api.security.RevokedTokens;
+import belajar_restful.belajar_spring_restful_api.security.SessionCache;
+import belajar_restful.belajar_spring_restful_api.security.TokenSigner;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.MethodParameter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-request authentication cost with the repository stubbed out, so the
+ * numbers only cover header parsing, the session cache or the signature check, and the
+ * expiry check.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class UserArgumentResolverBenchmark {
+
+    private static final String TOKEN = "benchmark-token";
+
+    @Param({"cached", "uncached", "signed"})
+    private String mode;
+
+    private UserArgumentResolver resolver;
+
+    private MethodParameter parameter;
+
+    private NativeWebRequest webRequest;
+
+    @Setup
+    public void setUp() throws Exception {
+        // the resolver logs at info on every call, keep console output out of the measurement
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+
+        UserSession session = new StubUserSession(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1));
+        UserRepository userRepository = (UserRepository) Proxy.newProxyInstance(
+                UserRepository.class.getClassLoader(),
+                new Class<?>[]{UserRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findFirstByToken" -> Optional.of(session);
+                    case "toString" -> "UserRepositoryStub";
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+
+        SessionCache sessionCache = "cached".equals(mode)
+                ? new SessionCache(10_000, Duration.ofMinutes(5))
+                : new SessionCache(10_000, Duration.ZERO);
+        TokenSigner tokenSigner = new TokenSigner(mode, "");
+        // nothing is revoked, so the filter never sends a lookup to the repository
+        RevokedTokens revokedTokens = new RevokedTokens(null, null, new SimpleMeterRegistry(), 1000, 0.01);
+
+        resolver = new UserArgumentResolver();
+        ReflectionTestUtils.setField(resolver, "userRepository", userRepository);
+        ReflectionTestUtils.setField(resolver, "sessionCache", sessionCache);
+        ReflectionTestUtils.setField(resolver, "tokenSigner", tokenSigner);
+        ReflectionTestUtils.setField(resolver, "revokedTokens", revokedTokens);
+
+        parameter = new MethodParameter(UserArgumentResolverBenchmark.class.getDeclaredMethod("handler", User.class), 0);
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/contacts");
+        request.addHeader("X-API-TOKEN", "signed".equals(mode)
+                ? tokenSigner.issue("benchmark", System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1))
+                : TOKEN);
+        webRequest = new ServletWebRequest(request);
+    }
+
+    @Benchmark
+    public Object resolveArgument() throws Exception {
+        return resolver.resolveArgument(parameter, null, webRequest, null);
+    }
+
+    @SuppressWarnings("unused")
+    private void handler(User user) {
+    }
+
+    private record StubUserSession(Long tokenExpiredAt) implements UserSession {
+
+        @Override
+        public String getUsername() {
+            return "benchmark";
+        }
+
+        @Override
+        public String getName() {
+            return "Benchmark";
+        }
+
+        @Override
+        public String getToken() {
+            return TOKEN;
+        }
+
+        @Override
+        public Long getTokenExpiredAt() {
+            return tokenExpiredAt;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package belajar_restful.belajar_spring_restful_api;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+@Configuration
+@EnableCaching
+public class CacheConfiguration {
+
+    public static final String CONTACTS = "contacts";
+
+    public static final String ADDRESSES = "addresses";
+
+    public static final String ADDRESS_LISTS = "addressLists";
+
+    @Bean
+    public CacheManager cacheManager(@Value("${app.cache.spec:maximumSize=10000,expireAfterWrite=5m,recordStats}") String spec) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setCacheSpecification(spec);
+        cacheManager.setCacheNames(List.of(CONTACTS, ADDRESSES, ADDRESS_LISTS));
+        cacheManager.setAllowNullValues(false);
+
+        // evictions are applied after commit, so a concurrent read cannot cache the old row again
+        return new TransactionAwareCacheManagerProxy(cacheManager);
+    }
+}
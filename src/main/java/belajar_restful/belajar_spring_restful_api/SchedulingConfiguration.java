@@ -0,0 +1,9 @@
+package belajar_restful.belajar_spring_restful_api;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+@Configuration
+@EnableScheduling
+public class SchedulingConfiguration {
+}
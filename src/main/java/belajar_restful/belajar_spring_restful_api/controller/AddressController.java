@@ -3,12 +3,15 @@ package belajar_restful.belajar_spring_restful_api.controller;
 import belajar_restful.belajar_spring_restful_api.entity.User;
 import belajar_restful.belajar_spring_restful_api.model.AddressResponse;
 import belajar_restful.belajar_spring_restful_api.model.CreateAddressRequest;
+import belajar_restful.belajar_spring_restful_api.model.ReplaceAddressesRequest;
 import belajar_restful.belajar_spring_restful_api.model.UpdateAddressRequest;
 import belajar_restful.belajar_spring_restful_api.model.WebResponse;
 import belajar_restful.belajar_spring_restful_api.service.AddressService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -37,8 +40,12 @@ public class AddressController {
     )
     public WebResponse<AddressResponse> get (User user,
                                              @PathVariable("contactId") String contactId,
-                                             @PathVariable("addressId") String addressId) {
+                                             @PathVariable("addressId") String addressId,
+                                             WebRequest webRequest) {
        AddressResponse addressResponse =  addressService.get(user,contactId,addressId);
+       if(webRequest.checkNotModified(ETags.of(addressResponse.getVersion()))){
+           return null;
+       }
        return WebResponse.<AddressResponse>builder().data(addressResponse).build();
     }
 
@@ -47,14 +54,18 @@ public class AddressController {
             produces = MediaType.APPLICATION_JSON_VALUE,
             consumes = MediaType.APPLICATION_JSON_VALUE
     )
-    public WebResponse<AddressResponse> update(User user,
-                                               @RequestBody UpdateAddressRequest request,
-                                               @PathVariable(name = "contactId") String contactId,
-                                               @PathVariable(name = "addressId") String addressId) {
+    public ResponseEntity<WebResponse<AddressResponse>> update(User user,
+                                                               @RequestBody UpdateAddressRequest request,
+                                                               @PathVariable(name = "contactId") String contactId,
+                                                               @PathVariable(name = "addressId") String addressId,
+                                                               @RequestHeader(value = "If-Match", required = false) String ifMatch) {
         request.setContactId(contactId);
         request.setAddressId(addressId);
+        request.setVersion(ETags.expectedVersion(ifMatch));
         AddressResponse addressResponse = addressService.update(user, request);
-        return WebResponse.<AddressResponse>builder().data(addressResponse).build();
+        return ResponseEntity.ok()
+                .eTag(ETags.of(addressResponse.getVersion()))
+                .body(WebResponse.<AddressResponse>builder().data(addressResponse).build());
     }
 
     @DeleteMapping(
@@ -70,14 +81,34 @@ public class AddressController {
     }
 
 
+    @PutMapping(
+            path = "/api/contacts/{contactId}/addresses",
+            produces = MediaType.APPLICATION_JSON_VALUE,
+            consumes = MediaType.APPLICATION_JSON_VALUE
+    )
+    public WebResponse<List<AddressResponse>> replace(User user,
+                                                      @RequestBody ReplaceAddressesRequest request,
+                                                      @PathVariable(name = "contactId") String contactId) {
+        request.setContactId(contactId);
+        List<AddressResponse> addressResponses = addressService.replace(user, request);
+        return WebResponse.<List<AddressResponse>>builder().data(addressResponses).build();
+    }
+
     @GetMapping(
             path = "/api/contacts/{contactId}/addresses",
             produces = MediaType.APPLICATION_JSON_VALUE
     )
     public WebResponse<List<AddressResponse>> list (User user,
-                                                    @PathVariable("contactId") String contactId) {
+                                                    @PathVariable("contactId") String contactId,
+                                                    WebRequest webRequest) {
        List<AddressResponse> addressResponses = addressService.list(user,contactId);
 
+       StringBuilder versions = new StringBuilder();
+       addressResponses.forEach(address -> versions.append(address.getId()).append(':').append(address.getVersion()).append(','));
+       if(webRequest.checkNotModified(ETags.of(versions))){
+           return null;
+       }
+
        return WebResponse.<List<AddressResponse>>builder().data(addressResponses).build();
     }
 
@@ -3,12 +3,20 @@ package belajar_restful.belajar_spring_restful_api.controller;
 
 import belajar_restful.belajar_spring_restful_api.entity.User;
 import belajar_restful.belajar_spring_restful_api.model.*;
+import belajar_restful.belajar_spring_restful_api.service.ContactExportService;
+import belajar_restful.belajar_spring_restful_api.service.ContactImportService;
 import belajar_restful.belajar_spring_restful_api.service.ContactService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Window;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
@@ -16,6 +24,12 @@ public class ContactController {
     @Autowired
     private ContactService contactService;
 
+    @Autowired
+    private ContactImportService contactImportService;
+
+    @Autowired
+    private ContactExportService contactExportService;
+
     @PostMapping(path = "/api/contacts",
     consumes = MediaType.APPLICATION_JSON_VALUE,
     produces = MediaType.APPLICATION_JSON_VALUE)
@@ -24,25 +38,49 @@ public class ContactController {
         return WebResponse.<ContactResponse>builder().data(contactResponse).build();
     }
 
+    @PostMapping(path = "/api/contacts/import",
+            consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public WebResponse<List<ImportContactResponse>> importContacts(User user, InputStream body){
+        List<ImportContactResponse> responses = contactImportService.importContacts(user, body);
+        return WebResponse.<List<ImportContactResponse>>builder().data(responses).build();
+    }
+
+    @GetMapping(
+            path = "/api/contacts/export",
+            produces = MediaType.APPLICATION_NDJSON_VALUE
+    )
+    public ResponseEntity<StreamingResponseBody> export(User user){
+        StreamingResponseBody body = outputStream -> contactExportService.export(user, outputStream);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
     @GetMapping(
             path = "/api/contacts/{contactId}",
             produces = MediaType.APPLICATION_JSON_VALUE
     )
-    public WebResponse<ContactResponse> get(User user,@PathVariable("contactId") String contactId){
+    public WebResponse<ContactResponse> get(User user,@PathVariable("contactId") String contactId, WebRequest webRequest){
       ContactResponse contactResponse =  contactService.get(user, contactId);
+      if(webRequest.checkNotModified(ETags.of(contactResponse.getVersion()))){
+          return null;
+      }
       return WebResponse.<ContactResponse>builder().data(contactResponse).build();
     }
 
     @PutMapping(path = "/api/contacts/{contactId}",
             consumes = MediaType.APPLICATION_JSON_VALUE,
             produces = MediaType.APPLICATION_JSON_VALUE)
-    public WebResponse<ContactResponse> update(User user, @RequestBody UpdateContactRequest request,
-                                               @PathVariable("contactId") String contactId){
+    public ResponseEntity<WebResponse<ContactResponse>> update(User user, @RequestBody UpdateContactRequest request,
+                                                               @PathVariable("contactId") String contactId,
+                                                               @RequestHeader(value = "If-Match", required = false) String ifMatch){
 
         request.setId(contactId);
+        request.setVersion(ETags.expectedVersion(ifMatch));
 
         ContactResponse contactResponse =  contactService.update(user, request);
-        return WebResponse.<ContactResponse>builder().data(contactResponse).build();
+        return ResponseEntity.ok()
+                .eTag(ETags.of(contactResponse.getVersion()))
+                .body(WebResponse.<ContactResponse>builder().data(contactResponse).build());
     }
 
     @DeleteMapping(
@@ -65,25 +103,50 @@ public class ContactController {
                                                      @RequestParam(value = "email" , required = false)   String email,
                                                      @RequestParam(value = "phone" , required = false)   String phone,
                                                      @RequestParam(value = "page" , required = false, defaultValue = "0") Integer page,
-                                                     @RequestParam(value = "size" , required = false, defaultValue = "10") Integer size){
+                                                     @RequestParam(value = "size" , required = false, defaultValue = "10") Integer size,
+                                                     @RequestParam(value = "cursor" , required = false)   String cursor,
+                                                     @RequestParam(value = "count" , required = false, defaultValue = "exact") String count,
+                                                     WebRequest webRequest){
         SearchContactRequest request = SearchContactRequest.builder()
                 .page(page)
                 .size(size)
                 .name(name)
                 .email(email)
                 .phone(phone)
+                .cursor(cursor)
+                .count(count)
                 .build();
 
+        List<ContactResponse> data;
+        PagingResponse paging;
+        if(cursor != null){
+            Window<ContactResponse> contactResponses = contactService.scroll(user, request);
+            data = contactResponses.getContent();
+            paging = PagingResponse.builder()
+                    .size(size)
+                    .nextCursor(contactService.nextCursor(contactResponses))
+                    .build();
+        } else {
+            Slice<ContactResponse> contactResponses = contactService.search(user, request);
+            data = contactResponses.getContent();
+            paging = PagingResponse.builder()
+                    .currentPage(contactResponses.getNumber())
+                    .totalPage(contactResponses instanceof Page<?> counted ? counted.getTotalPages() : null)
+                    .size(contactResponses.getSize())
+                    .countMode(count)
+                    .build();
+        }
+
+        StringBuilder versions = new StringBuilder(paging.toString());
+        data.forEach(contact -> versions.append(contact.getId()).append(':').append(contact.getVersion()).append(','));
+        if(webRequest.checkNotModified(ETags.of(versions))){
+            return null;
+        }
 
-        Page<ContactResponse> contactResponses = contactService.search(user, request);
         return WebResponse
                 .<List<ContactResponse>>builder()
-                .data(contactResponses.getContent())
-                .paging(PagingResponse.builder()
-                        .currentPage(contactResponses.getNumber())
-                        .totalPage(contactResponses.getTotalPages())
-                        .size(contactResponses.getSize())
-                        .build())
+                .data(data)
+                .paging(paging)
                 .build();
     }
 
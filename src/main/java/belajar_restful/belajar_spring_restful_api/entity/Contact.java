@@ -7,6 +7,7 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import java.util.List;
+import java.util.Locale;
 
 @Getter
 @Setter
@@ -29,10 +30,38 @@ public class Contact {
 
     private String email;
 
-    @ManyToOne
+    @Column(name = "email_lower")
+    private String emailLower;
+
+    @Column(name = "email_lower_reversed")
+    private String emailLowerReversed;
+
+    @Column(name = "phone_digits")
+    private String phoneDigits;
+
+    @Column(name = "phone_digits_reversed")
+    private String phoneDigitsReversed;
+
+    @Version
+    private Long version;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "username", referencedColumnName = "username")
     private User user;
 
     @OneToMany(mappedBy = "contact")
     private List<Address> addresses;
+
+    @PrePersist
+    @PreUpdate
+    public void normalize() {
+        emailLower = email == null ? null : email.toLowerCase(Locale.ROOT);
+        emailLowerReversed = emailLower == null ? null : new StringBuilder(emailLower).reverse().toString();
+        phoneDigits = phone == null ? null : digits(phone);
+        phoneDigitsReversed = phoneDigits == null ? null : new StringBuilder(phoneDigits).reverse().toString();
+    }
+
+    public static String digits(String value) {
+        return value.replaceAll("\\D", "");
+    }
 }
@@ -1,5 +1,6 @@
 package belajar_restful.belajar_spring_restful_api.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -22,5 +23,8 @@ public class AddressResponse {
 
     private String postalCode;
 
+    @JsonIgnore
+    private Long version;
+
 
 }
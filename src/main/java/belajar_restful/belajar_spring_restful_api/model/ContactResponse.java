@@ -1,6 +1,7 @@
 package belajar_restful.belajar_spring_restful_api.model;
 
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -20,4 +21,7 @@ public class ContactResponse {
     private String email;
     private String phone;
 
+    @JsonIgnore
+    private Long version;
+
 }
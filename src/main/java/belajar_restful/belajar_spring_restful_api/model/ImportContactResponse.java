@@ -0,0 +1,19 @@
+package belajar_restful.belajar_spring_restful_api.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ImportContactResponse {
+
+    private Integer index;
+
+    private String id;
+
+    private String errors;
+}
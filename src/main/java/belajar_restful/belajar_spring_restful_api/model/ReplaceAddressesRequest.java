@@ -0,0 +1,28 @@
+package belajar_restful.belajar_spring_restful_api.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReplaceAddressesRequest {
+
+    @JsonIgnore
+    @NotBlank
+    private String contactId;
+
+    @NotNull
+    @Size(max = 100)
+    private List<@Valid @NotNull AddressItemRequest> addresses;
+}
@@ -2,6 +2,7 @@ package belajar_restful.belajar_spring_restful_api.model;
 
 
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -24,4 +25,9 @@ public class SearchContactRequest {
 
     @NotNull
     private Integer size;
+
+    private String cursor;
+
+    @Pattern(regexp = "none|exact|estimate")
+    private String count;
 }
@@ -22,6 +22,9 @@ public class UpdateAddressRequest {
     @NotBlank
     private String addressId;
 
+    @JsonIgnore
+    private Long version;
+
     @Size(max = 200)
     private String street;
 
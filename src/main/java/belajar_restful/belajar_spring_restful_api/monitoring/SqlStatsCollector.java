@@ -0,0 +1,137 @@
+package belajar_restful.belajar_spring_restful_api.monitoring;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every JDBC statement and, while a request is being handled on the current thread,
+ * adds it to that request's statistics. Statements slower than the threshold are logged.
+ */
+@Component
+@Slf4j
+public class SqlStatsCollector implements QueryExecutionListener {
+
+    private static final ThreadLocal<RequestSqlStats> CURRENT = new ThreadLocal<>();
+
+    private static final String STARTED_AT = SqlStatsCollector.class.getName() + ".startedAt";
+
+    private final MeterRegistry meterRegistry;
+
+    private final Duration slowQueryThreshold;
+
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    private final Counter slowQueries;
+
+    public SqlStatsCollector(MeterRegistry meterRegistry,
+                             @Value("${app.sql-stats.slow-query-threshold:200ms}") Duration slowQueryThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.slowQueryThreshold = slowQueryThreshold;
+        this.slowQueries = Counter.builder("db.statement.slow").register(meterRegistry);
+    }
+
+    public void begin() {
+        CURRENT.set(new RequestSqlStats());
+    }
+
+    public RequestSqlStats end() {
+        RequestSqlStats stats = CURRENT.get();
+        CURRENT.remove();
+        return stats;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        // ExecutionInfo only has whole milliseconds, most statements would record 0
+        execInfo.addCustomValue(STARTED_AT, System.nanoTime());
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        Long startedAt = execInfo.getCustomValue(STARTED_AT, Long.class);
+        long elapsed = Objects.nonNull(startedAt)
+                ? System.nanoTime() - startedAt
+                : TimeUnit.MILLISECONDS.toNanos(execInfo.getElapsedTime());
+        String sql = queryInfoList.isEmpty() ? "" : queryInfoList.get(0).getQuery();
+        String type = statementType(sql);
+
+        timers.computeIfAbsent(type, key -> Timer.builder("db.statement")
+                        .tag("type", key)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry))
+                .record(elapsed, TimeUnit.NANOSECONDS);
+
+        if (elapsed > slowQueryThreshold.toNanos()) {
+            slowQueries.increment();
+            log.warn("Slow query elapsed_ms={} type={} success={} sql=\"{}\"",
+                    TimeUnit.NANOSECONDS.toMillis(elapsed), type, execInfo.isSuccess(), oneLine(sql));
+        }
+
+        RequestSqlStats stats = CURRENT.get();
+        if (Objects.nonNull(stats)) {
+            stats.add(sql, type, elapsed);
+        }
+    }
+
+    static String oneLine(String sql) {
+        return sql.replaceAll("\\s+", " ").trim();
+    }
+
+    private String statementType(String sql) {
+        String trimmed = sql.stripLeading();
+        int end = 0;
+        while (end < trimmed.length() && Character.isLetter(trimmed.charAt(end))) {
+            end++;
+        }
+        String keyword = trimmed.substring(0, end).toLowerCase(Locale.ROOT);
+        return switch (keyword) {
+            case "select", "insert", "update", "delete" -> keyword;
+            default -> "other";
+        };
+    }
+
+    public static class RequestSqlStats {
+
+        private int statements;
+
+        private long elapsedNanos;
+
+        private final Map<String, Integer> selects = new HashMap<>();
+
+        void add(String sql, String type, long elapsed) {
+            statements++;
+            elapsedNanos += elapsed;
+            if (type.equals("select")) {
+                selects.merge(sql, 1, Integer::sum);
+            }
+        }
+
+        public int getStatements() {
+            return statements;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public Map<String, Integer> getSelects() {
+            return selects;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package belajar_restful.belajar_spring_restful_api.monitoring;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes statement count and database time per request, tagged with the matched route,
+ * and reports a select repeated often enough within one request to look like an N+1.
+ */
+@Component
+@Slf4j
+public class SqlStatsFilter extends OncePerRequestFilter {
+
+    private final SqlStatsCollector collector;
+
+    private final MeterRegistry meterRegistry;
+
+    private final int nPlusOneThreshold;
+
+    public SqlStatsFilter(SqlStatsCollector collector, MeterRegistry meterRegistry,
+                          @Value("${app.sql-stats.n-plus-one-threshold:5}") int nPlusOneThreshold) {
+        this.collector = collector;
+        this.meterRegistry = meterRegistry;
+        this.nPlusOneThreshold = nPlusOneThreshold;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        collector.begin();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            SqlStatsCollector.RequestSqlStats stats = collector.end();
+            if (Objects.nonNull(stats)) {
+                record(request, stats);
+            }
+        }
+    }
+
+    private void record(HttpServletRequest request, SqlStatsCollector.RequestSqlStats stats) {
+        String method = request.getMethod();
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = Objects.nonNull(pattern) ? pattern.toString() : "UNKNOWN";
+
+        DistributionSummary.builder("db.request.statements")
+                .tags("method", method, "uri", uri)
+                .register(meterRegistry)
+                .record(stats.getStatements());
+        Timer.builder("db.request.time")
+                .tags("method", method, "uri", uri)
+                .register(meterRegistry)
+                .record(stats.getElapsedNanos(), TimeUnit.NANOSECONDS);
+
+        stats.getSelects().forEach((sql, count) -> {
+            if (count >= nPlusOneThreshold) {
+                Counter.builder("db.request.n_plus_one")
+                        .tags("method", method, "uri", uri)
+                        .register(meterRegistry)
+                        .increment();
+                log.warn("Possible N+1 method={} uri={} executions={} sql=\"{}\"",
+                        method, uri, count, SqlStatsCollector.oneLine(sql));
+            }
+        });
+
+        if (log.isDebugEnabled()) {
+            log.debug("SQL stats method={} uri={} statements={} db_time_ms={}",
+                    method, uri, stats.getStatements(), TimeUnit.NANOSECONDS.toMillis(stats.getElapsedNanos()));
+        }
+    }
+}
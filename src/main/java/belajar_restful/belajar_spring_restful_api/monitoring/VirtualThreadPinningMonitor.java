@@ -0,0 +1,100 @@
+package belajar_restful.belajar_spring_restful_api.monitoring;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Reports virtual threads that stay pinned to their carrier, e.g. while blocking inside a
+ * synchronized block, by listening to the {@code jdk.VirtualThreadPinned} JFR event.
+ * Every pin is timed, each distinct call site is logged once. Reported sites are capped, the
+ * least recently seen go first; a pin at a site still remembered is only counted.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+@Slf4j
+public class VirtualThreadPinningMonitor {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private static final int LOGGED_FRAMES = 8;
+
+    private final Timer pinned;
+
+    private final Duration threshold;
+
+    private final Counter repeated;
+
+    private final Cache<String, Boolean> reportedSites;
+
+    private RecordingStream recordingStream;
+
+    public VirtualThreadPinningMonitor(MeterRegistry meterRegistry,
+                                       @Value("${app.virtual-threads.pinning-threshold:20ms}") Duration threshold,
+                                       @Value("${app.virtual-threads.max-reported-sites:1000}") long maxReportedSites) {
+        this.threshold = threshold;
+        this.pinned = Timer.builder("jvm.threads.virtual.pinned")
+                .description("Time virtual threads spent blocked while pinned to a carrier thread")
+                .register(meterRegistry);
+        this.repeated = Counter.builder("jvm.threads.virtual.pinned.repeated")
+                .description("Pins at a call site that was already logged")
+                .register(meterRegistry);
+        this.reportedSites = Caffeine.newBuilder()
+                .maximumSize(maxReportedSites)
+                .build();
+    }
+
+    @PostConstruct
+    public void start() {
+        recordingStream = new RecordingStream();
+        recordingStream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        recordingStream.onEvent(PINNED_EVENT, this::onPinned);
+        recordingStream.startAsync();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (Objects.nonNull(recordingStream)) {
+            recordingStream.close();
+        }
+    }
+
+    private void onPinned(RecordedEvent event) {
+        pinned.record(event.getDuration());
+
+        String stackTrace = stackTrace(event.getStackTrace());
+        if (Objects.isNull(reportedSites.asMap().putIfAbsent(stackTrace, Boolean.TRUE))) {
+            log.warn("Virtual thread pinned for {} ms at\n{}", event.getDuration().toMillis(), stackTrace);
+        } else {
+            repeated.increment();
+        }
+    }
+
+    private String stackTrace(RecordedStackTrace stackTrace) {
+        if (Objects.isNull(stackTrace)) {
+            return "\t(no stack trace)";
+        }
+        return stackTrace.getFrames().stream()
+                .filter(RecordedFrame::isJavaFrame)
+                .limit(LOGGED_FRAMES)
+                .map(frame -> "\tat " + frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                        + "(line " + frame.getLineNumber() + ")")
+                .collect(Collectors.joining("\n"));
+    }
+}
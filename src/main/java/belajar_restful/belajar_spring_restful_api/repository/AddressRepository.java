@@ -1,8 +1,10 @@
 package belajar_restful.belajar_spring_restful_api.repository;
 
 import belajar_restful.belajar_spring_restful_api.entity.Address;
-import belajar_restful.belajar_spring_restful_api.entity.Contact;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -10,7 +12,29 @@ import java.util.Optional;
 
 @Repository
 public interface AddressRepository extends JpaRepository<Address, String> {
-    Optional<Address> findFirstByContactAndId(Contact contact, String id);
+    @Query("""
+            select a from Address a
+            where a.id = :id and a.contact.id = :contactId and a.contact.user.username = :username
+            """)
+    Optional<Address> findFirstByUsernameAndContactIdAndId(@Param("username") String username,
+                                                           @Param("contactId") String contactId,
+                                                           @Param("id") String id);
 
-    List<Address> findAllByContact(Contact contact);
+    @Query("""
+            select a from Address a
+            where a.contact.id = :contactId and a.contact.user.username = :username
+            """)
+    List<Address> findAllByUsernameAndContactId(@Param("username") String username,
+                                                @Param("contactId") String contactId);
+
+    @Modifying
+    @Query("""
+            delete from Address a
+            where a.id = :id and a.contact.id in (
+                select c.id from Contact c where c.id = :contactId and c.user.username = :username
+            )
+            """)
+    int deleteByUsernameAndContactIdAndId(@Param("username") String username,
+                                          @Param("contactId") String contactId,
+                                          @Param("id") String id);
 }
@@ -4,7 +4,11 @@ import belajar_restful.belajar_spring_restful_api.entity.Contact;
 import belajar_restful.belajar_spring_restful_api.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
@@ -12,4 +16,21 @@ import java.util.Optional;
 public interface ContactRepository extends JpaRepository<Contact, String>, JpaSpecificationExecutor<Contact> {
 
     Optional<Contact> findFirstByUserAndId(User user, String id);
+
+    @Query("select count(c) > 0 from Contact c where c.id = :id and c.user.username = :username")
+    boolean existsByUsernameAndId(@Param("username") String username, @Param("id") String id);
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+            update contacts
+            set email_lower = lower(email),
+                email_lower_reversed = reverse(lower(email)),
+                phone_digits = regexp_replace(phone, '[^0-9]', ''),
+                phone_digits_reversed = reverse(regexp_replace(phone, '[^0-9]', ''))
+            where (email is not null and (email_lower is null or email_lower_reversed is null))
+               or (phone is not null and phone_digits is null)
+            limit :batchSize
+            """, nativeQuery = true)
+    int normalizeBatch(@Param("batchSize") int batchSize);
 }
@@ -0,0 +1,29 @@
+package belajar_restful.belajar_spring_restful_api.repository;
+
+import org.hibernate.boot.model.FunctionContributions;
+import org.hibernate.boot.model.FunctionContributor;
+import org.hibernate.type.BasicType;
+import org.hibernate.type.StandardBasicTypes;
+
+/**
+ * Registers MySQL {@code MATCH ... AGAINST} in boolean mode so specifications can use the
+ * FULLTEXT indexes on contacts. The column list has to be exactly the one of an index.
+ */
+public class FullTextFunctionContributor implements FunctionContributor {
+
+    public static final String MATCH_AGAINST = "match_against";
+
+    public static final String MATCH_AGAINST_PAIR = "match_against_pair";
+
+    @Override
+    public void contributeFunctions(FunctionContributions functionContributions) {
+        BasicType<Double> score = functionContributions.getTypeConfiguration()
+                .getBasicTypeRegistry()
+                .resolve(StandardBasicTypes.DOUBLE);
+
+        functionContributions.getFunctionRegistry()
+                .registerPattern(MATCH_AGAINST, "match (?1) against (?2 in boolean mode)", score);
+        functionContributions.getFunctionRegistry()
+                .registerPattern(MATCH_AGAINST_PAIR, "match (?1, ?2) against (?3 in boolean mode)", score);
+    }
+}
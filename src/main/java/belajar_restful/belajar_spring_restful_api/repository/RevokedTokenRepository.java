@@ -0,0 +1,27 @@
+package belajar_restful.belajar_spring_restful_api.repository;
+
+import belajar_restful.belajar_spring_restful_api.entity.RevokedToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, String> {
+
+    @Query("select r.signature from RevokedToken r where r.expiredAt >= :now")
+    List<String> findActiveSignatures(@Param("now") long now);
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+            delete from revoked_tokens
+            where expired_at < :now
+            limit :batchSize
+            """, nativeQuery = true)
+    int deleteExpired(@Param("now") long now, @Param("batchSize") int batchSize);
+}
@@ -2,12 +2,44 @@ package belajar_restful.belajar_spring_restful_api.repository;
 
 import belajar_restful.belajar_spring_restful_api.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, String> {
 
-    Optional<User> findFirstByToken(String token);
+    Optional<UserSession> findFirstByToken(String token);
+
+    @Modifying
+    @Query("update User u set u.token = null, u.tokenExpiredAt = null where u.username = :username")
+    int clearToken(@Param("username") String username);
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+            update users
+            set token = null, token_expired_at = null
+            where token_expired_at < :now
+            limit :batchSize
+            """, nativeQuery = true)
+    int clearExpiredTokens(@Param("now") long now, @Param("batchSize") int batchSize);
+
+    @Transactional
+    @Modifying
+    @Query("update User u set u.token = :token, u.tokenExpiredAt = :tokenExpiredAt where u.username = :username")
+    int updateToken(@Param("username") String username,
+                    @Param("token") String token,
+                    @Param("tokenExpiredAt") Long tokenExpiredAt);
+
+    @Transactional
+    @Modifying
+    @Query("update User u set u.password = :password where u.username = :username and u.password = :previousPassword")
+    int updatePassword(@Param("username") String username,
+                       @Param("previousPassword") String previousPassword,
+                       @Param("password") String password);
 }
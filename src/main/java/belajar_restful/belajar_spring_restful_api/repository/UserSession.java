@@ -0,0 +1,12 @@
+package belajar_restful.belajar_spring_restful_api.repository;
+
+public interface UserSession {
+
+    String getUsername();
+
+    String getName();
+
+    String getToken();
+
+    Long getTokenExpiredAt();
+}
@@ -2,6 +2,10 @@ package belajar_restful.belajar_spring_restful_api.resolver;
 
 import belajar_restful.belajar_spring_restful_api.entity.User;
 import belajar_restful.belajar_spring_restful_api.repository.UserRepository;
+import belajar_restful.belajar_spring_restful_api.repository.UserSession;
+import belajar_restful.belajar_spring_restful_api.security.RevokedTokens;
+import belajar_restful.belajar_spring_restful_api.security.SessionCache;
+import belajar_restful.belajar_spring_restful_api.security.TokenSigner;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.validator.constraints.CodePointLength;
@@ -22,6 +26,15 @@ public class UserArgumentResolver implements HandlerMethodArgumentResolver {
    @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private SessionCache sessionCache;
+
+    @Autowired
+    private TokenSigner tokenSigner;
+
+    @Autowired
+    private RevokedTokens revokedTokens;
+
     @Override
     public boolean supportsParameter(MethodParameter parameter) {
         return User.class.equals(parameter.getParameterType());
@@ -35,8 +48,9 @@ public class UserArgumentResolver implements HandlerMethodArgumentResolver {
      if(token == null){
          throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Unauthorized");
      }
-        User user = userRepository.findFirstByToken(token)
-           .orElseThrow(()-> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Unauthorized"));
+        User user = tokenSigner.verify(token)
+                .map(claims -> signedUser(token, claims))
+                .orElseGet(() -> opaqueUser(token));
 
      log.info("User: {}", user);
 
@@ -45,4 +59,23 @@ public class UserArgumentResolver implements HandlerMethodArgumentResolver {
      }
      return user;
     }
+
+    // no database access unless the token hits the revocation filter; the name is left for whoever needs it
+    private User signedUser(String token, TokenSigner.Claims claims) {
+        if (revokedTokens.isRevoked(claims)) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Unauthorized");
+        }
+        return new User(claims.username(), null, null, token, claims.expiredAt(), null);
+    }
+
+    private User opaqueUser(String token) {
+        return sessionCache.get(token).orElseGet(() -> {
+            UserSession session = userRepository.findFirstByToken(token)
+                    .orElseThrow(()-> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Unauthorized"));
+            User found = new User(session.getUsername(), null, session.getName(),
+                    session.getToken(), session.getTokenExpiredAt(), null);
+            sessionCache.put(found);
+            return found;
+        });
+    }
 }
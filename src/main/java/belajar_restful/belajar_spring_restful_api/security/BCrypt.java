@@ -14,8 +14,9 @@
 
 package belajar_restful.belajar_spring_restful_api.security;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
 import java.security.SecureRandom;
 import java.util.Arrays;
 
@@ -209,10 +210,33 @@ public class BCrypt {
 	static final int MIN_LOG_ROUNDS = 4;
 	static final int MAX_LOG_ROUNDS = 31;
 
+	// Per-thread hashing state, reused so that a hash does not allocate a key schedule
+	private static final ThreadLocal<BCrypt> STATE = ThreadLocal.withInitial(BCrypt::new);
+
+	private static final SecureRandom RANDOM = new SecureRandom();
+
 	// Expanded Blowfish key
-	private int P[];
+	private final int P[] = new int[P_orig.length];
+
+	private final int S[] = new int[S_orig.length];
+
+	// Scratch buffers for a single hash
+	private final int lr[] = new int[2];
+
+	private final int cdata[] = new int[bf_crypt_ciphertext.length];
+
+	private final byte saltb[] = new byte[BCRYPT_SALT_LEN];
+
+	private final byte hashed[] = new byte[bf_crypt_ciphertext.length * 4];
 
-	private int S[];
+	// Current offset into the key material, advanced by the streamtoword methods
+	private int streamOff;
+
+	// Cumulative flag for non-benign sign extension, accumulated by streamtowords
+	private int streamSign;
+
+	// Sign-extended word from the last streamtowords call
+	private int streamBugWord;
 
 	/**
 	 * Encode a byte array using bcrypt's slightly-modified base64 encoding scheme. Note
@@ -221,9 +245,11 @@ public class BCrypt {
 	 * @param d the byte array to encode
 	 * @param len the number of bytes to encode
 	 * @param rs the destination buffer for the base64-encoded string
+	 * @param pos the position in rs to start writing at
+	 * @return the position in rs after the last character written
 	 * @exception IllegalArgumentException if the length is invalid
 	 */
-	static void encode_base64(byte d[], int len, StringBuilder rs) throws IllegalArgumentException {
+	static int encode_base64(byte d[], int len, char rs[], int pos) throws IllegalArgumentException {
 		int off = 0;
 		int c1, c2;
 
@@ -233,25 +259,26 @@ public class BCrypt {
 
 		while (off < len) {
 			c1 = d[off++] & 0xff;
-			rs.append(base64_code[(c1 >> 2) & 0x3f]);
+			rs[pos++] = base64_code[(c1 >> 2) & 0x3f];
 			c1 = (c1 & 0x03) << 4;
 			if (off >= len) {
-				rs.append(base64_code[c1 & 0x3f]);
+				rs[pos++] = base64_code[c1 & 0x3f];
 				break;
 			}
 			c2 = d[off++] & 0xff;
 			c1 |= (c2 >> 4) & 0x0f;
-			rs.append(base64_code[c1 & 0x3f]);
+			rs[pos++] = base64_code[c1 & 0x3f];
 			c1 = (c2 & 0x0f) << 2;
 			if (off >= len) {
-				rs.append(base64_code[c1 & 0x3f]);
+				rs[pos++] = base64_code[c1 & 0x3f];
 				break;
 			}
 			c2 = d[off++] & 0xff;
 			c1 |= (c2 >> 6) & 0x03;
-			rs.append(base64_code[c1 & 0x3f]);
-			rs.append(base64_code[c2 & 0x3f]);
+			rs[pos++] = base64_code[c1 & 0x3f];
+			rs[pos++] = base64_code[c2 & 0x3f];
 		}
+		return pos;
 	}
 
 	/**
@@ -268,24 +295,25 @@ public class BCrypt {
 	}
 
 	/**
-	 * Decode a string encoded using bcrypt's base64 scheme to a byte array. Note that
-	 * this is *not* compatible with the standard MIME-base64 encoding.
+	 * Decode part of a string encoded using bcrypt's base64 scheme into a byte array. Note
+	 * that this is *not* compatible with the standard MIME-base64 encoding.
 	 * @param s the string to decode
+	 * @param begin the index of the first character to decode
+	 * @param end the index after the last character to decode
 	 * @param maxolen the maximum number of bytes to decode
-	 * @return an array containing the decoded bytes
+	 * @param ret the destination buffer, at least maxolen bytes long
+	 * @return the number of bytes decoded into ret
 	 * @throws IllegalArgumentException if maxolen is invalid
 	 */
-	static byte[] decode_base64(String s, int maxolen) throws IllegalArgumentException {
-		StringBuilder rs = new StringBuilder();
-		int off = 0, slen = s.length(), olen = 0;
-		byte ret[];
+	static int decode_base64(String s, int begin, int end, int maxolen, byte ret[]) throws IllegalArgumentException {
+		int off = begin, olen = 0;
 		byte c1, c2, c3, c4, o;
 
 		if (maxolen <= 0) {
 			throw new IllegalArgumentException("Invalid maxolen");
 		}
 
-		while (off < slen - 1 && olen < maxolen) {
+		while (off < end - 1 && olen < maxolen) {
 			c1 = char64(s.charAt(off++));
 			c2 = char64(s.charAt(off++));
 			if (c1 == -1 || c2 == -1) {
@@ -293,8 +321,8 @@ public class BCrypt {
 			}
 			o = (byte) (c1 << 2);
 			o |= (c2 & 0x30) >> 4;
-			rs.append((char) o);
-			if (++olen >= maxolen || off >= slen) {
+			ret[olen] = o;
+			if (++olen >= maxolen || off >= end) {
 				break;
 			}
 			c3 = char64(s.charAt(off++));
@@ -303,22 +331,17 @@ public class BCrypt {
 			}
 			o = (byte) ((c2 & 0x0f) << 4);
 			o |= (c3 & 0x3c) >> 2;
-			rs.append((char) o);
-			if (++olen >= maxolen || off >= slen) {
+			ret[olen] = o;
+			if (++olen >= maxolen || off >= end) {
 				break;
 			}
 			c4 = char64(s.charAt(off++));
 			o = (byte) ((c3 & 0x03) << 6);
 			o |= c4;
-			rs.append((char) o);
+			ret[olen] = o;
 			++olen;
 		}
-
-		ret = new byte[olen];
-		for (off = 0; off < olen; off++) {
-			ret[off] = (byte) rs.charAt(off);
-		}
-		return ret;
+		return olen;
 	}
 
 	/**
@@ -327,117 +350,156 @@ public class BCrypt {
 	 * @param off the position in the array of the blocks
 	 */
 	private void encipher(int lr[], int off) {
+		final int P[] = this.P, S[] = this.S;
 		int i, n, l = lr[off], r = lr[off + 1];
 
-		l ^= this.P[0];
+		l ^= P[0];
 		for (i = 0; i <= BLOWFISH_NUM_ROUNDS - 2;) {
 			// Feistel substitution on left word
-			n = this.S[(l >> 24) & 0xff];
-			n += this.S[0x100 | ((l >> 16) & 0xff)];
-			n ^= this.S[0x200 | ((l >> 8) & 0xff)];
-			n += this.S[0x300 | (l & 0xff)];
-			r ^= n ^ this.P[++i];
+			n = S[(l >> 24) & 0xff];
+			n += S[0x100 | ((l >> 16) & 0xff)];
+			n ^= S[0x200 | ((l >> 8) & 0xff)];
+			n += S[0x300 | (l & 0xff)];
+			r ^= n ^ P[++i];
 
 			// Feistel substitution on right word
-			n = this.S[(r >> 24) & 0xff];
-			n += this.S[0x100 | ((r >> 16) & 0xff)];
-			n ^= this.S[0x200 | ((r >> 8) & 0xff)];
-			n += this.S[0x300 | (r & 0xff)];
-			l ^= n ^ this.P[++i];
+			n = S[(r >> 24) & 0xff];
+			n += S[0x100 | ((r >> 16) & 0xff)];
+			n ^= S[0x200 | ((r >> 8) & 0xff)];
+			n += S[0x300 | (r & 0xff)];
+			l ^= n ^ P[++i];
 		}
-		lr[off] = r ^ this.P[BLOWFISH_NUM_ROUNDS + 1];
+		lr[off] = r ^ P[BLOWFISH_NUM_ROUNDS + 1];
 		lr[off + 1] = l;
 	}
 
 	/**
-	 * Cycically extract a word of key material
+	 * Read a byte of key material. Offsets past the end of data read the trailing NUL
+	 * that the $2a$ and later revisions append to the password.
+	 * @param data the key material
+	 * @param off the offset to read
+	 * @return the byte at off, or 0 past the end of data
+	 */
+	private static byte keybyte(byte data[], int off) {
+		return off < data.length ? data[off] : 0;
+	}
+
+	/**
+	 * Cycically extract a word of key material, starting at streamOff. The sign-extended
+	 * word is left in streamBugWord and non-benign sign extension is accumulated in
+	 * streamSign.
 	 * @param data the string to extract the data from
-	 * @param offp a "pointer" (as a one-entry array) to the current offset into data
-	 * @param signp a "pointer" (as a one-entry array) to the cumulative flag for
-	 * non-benign sign extension
-	 * @return correct and buggy next word of material from data as int[2]
+	 * @param len the length of the key material
+	 * @return the correct next word of material from data
 	 */
-	private static int[] streamtowords(byte data[], int offp[], int signp[]) {
+	private int streamtowords(byte data[], int len) {
 		int i;
-		int words[] = { 0, 0 };
-		int off = offp[0];
-		int sign = signp[0];
+		int word = 0, bugword = 0;
+		int off = this.streamOff;
+		int sign = this.streamSign;
 
 		for (i = 0; i < 4; i++) {
-			words[0] = (words[0] << 8) | (data[off] & 0xff);
-			words[1] = (words[1] << 8) | data[off]; // sign extension bug
+			byte b = keybyte(data, off);
+			word = (word << 8) | (b & 0xff);
+			bugword = (bugword << 8) | b; // sign extension bug
 			if (i > 0) {
-				sign |= words[1] & 0x80;
+				sign |= bugword & 0x80;
+			}
+			if (++off == len) {
+				off = 0;
 			}
-			off = (off + 1) % data.length;
 		}
 
-		offp[0] = off;
-		signp[0] = sign;
-		return words;
+		this.streamOff = off;
+		this.streamSign = sign;
+		this.streamBugWord = bugword;
+		return word;
 	}
 
 	/**
-	 * Cycically extract a word of key material
+	 * Cycically extract a word of key material, starting at streamOff
 	 * @param data the string to extract the data from
-	 * @param offp a "pointer" (as a one-entry array) to the current offset into data
+	 * @param len the length of the key material
 	 * @return the next word of material from data
 	 */
-	private static int streamtoword(byte data[], int offp[]) {
-		int signp[] = { 0 };
-		return streamtowords(data, offp, signp)[0];
+	private int streamtoword(byte data[], int len) {
+		int word = 0;
+		int off = this.streamOff;
+
+		for (int i = 0; i < 4; i++) {
+			word = (word << 8) | (keybyte(data, off) & 0xff);
+			if (++off == len) {
+				off = 0;
+			}
+		}
+
+		this.streamOff = off;
+		return word;
 	}
 
 	/**
 	 * Cycically extract a word of key material, with sign-extension bug
 	 * @param data the string to extract the data from
-	 * @param offp a "pointer" (as a one-entry array) to the current offset into data
+	 * @param len the length of the key material
 	 * @return the next word of material from data
 	 */
-	private static int streamtoword_bug(byte data[], int offp[]) {
-		int signp[] = { 0 };
-		return streamtowords(data, offp, signp)[1];
+	private int streamtoword_bug(byte data[], int len) {
+		int word = 0;
+		int off = this.streamOff;
+
+		for (int i = 0; i < 4; i++) {
+			word = (word << 8) | keybyte(data, off);
+			if (++off == len) {
+				off = 0;
+			}
+		}
+
+		this.streamOff = off;
+		return word;
 	}
 
 	/**
 	 * Initialise the Blowfish key schedule
 	 */
 	private void init_key() {
-		this.P = P_orig.clone();
-		this.S = S_orig.clone();
+		System.arraycopy(P_orig, 0, this.P, 0, P_orig.length);
+		System.arraycopy(S_orig, 0, this.S, 0, S_orig.length);
 	}
 
 	/**
 	 * Key the Blowfish cipher
 	 * @param key an array containing the key
+	 * @param keylen the length of the key material
 	 * @param sign_ext_bug true to implement the 2x bug
-	 * @param safety bit 16 is set when the safety measure is requested
 	 */
-	private void key(byte key[], boolean sign_ext_bug, int safety) {
+	private void key(byte key[], int keylen, boolean sign_ext_bug) {
 		int i;
-		int koffp[] = { 0 };
-		int lr[] = { 0, 0 };
-		int plen = this.P.length, slen = this.S.length;
+		final int P[] = this.P, S[] = this.S, lr[] = this.lr;
+		int plen = P.length, slen = S.length;
+
+		this.streamOff = 0;
+		lr[0] = 0;
+		lr[1] = 0;
 
 		for (i = 0; i < plen; i++) {
 			if (!sign_ext_bug) {
-				this.P[i] = this.P[i] ^ streamtoword(key, koffp);
+				P[i] = P[i] ^ streamtoword(key, keylen);
 			}
 			else {
-				this.P[i] = this.P[i] ^ streamtoword_bug(key, koffp);
+				P[i] = P[i] ^ streamtoword_bug(key, keylen);
 			}
 		}
 
 		for (i = 0; i < plen; i += 2) {
 			encipher(lr, 0);
-			this.P[i] = lr[0];
-			this.P[i + 1] = lr[1];
+			P[i] = lr[0];
+			P[i + 1] = lr[1];
 		}
 
 		for (i = 0; i < slen; i += 2) {
 			encipher(lr, 0);
-			this.S[i] = lr[0];
-			this.S[i + 1] = lr[1];
+			S[i] = lr[0];
+			S[i + 1] = lr[1];
 		}
 	}
 
@@ -446,24 +508,29 @@ public class BCrypt {
 	 * Future-Adaptable Password Scheme" https://www.openbsd.org/papers/bcrypt-paper.ps
 	 * @param data salt information
 	 * @param key password information
+	 * @param keylen the length of the password information
 	 * @param sign_ext_bug true to implement the 2x bug
 	 * @param safety bit 16 is set when the safety measure is requested
 	 */
-	private void ekskey(byte data[], byte key[], boolean sign_ext_bug, int safety) {
+	private void ekskey(byte data[], byte key[], int keylen, boolean sign_ext_bug, int safety) {
 		int i;
-		int koffp[] = { 0 }, doffp[] = { 0 };
-		int lr[] = { 0, 0 };
-		int plen = this.P.length, slen = this.S.length;
-		int signp[] = { 0 }; // non-benign sign-extension flag
+		final int P[] = this.P, S[] = this.S, lr[] = this.lr;
+		int plen = P.length, slen = S.length;
 		int diff = 0; // zero iff correct and buggy are same
 
+		this.streamOff = 0;
+		this.streamSign = 0; // non-benign sign-extension flag
+		lr[0] = 0;
+		lr[1] = 0;
+
 		for (i = 0; i < plen; i++) {
-			int words[] = streamtowords(key, koffp, signp);
-			diff |= words[0] ^ words[1];
-			this.P[i] = this.P[i] ^ words[sign_ext_bug ? 1 : 0];
+			int word = streamtowords(key, keylen);
+			int bugword = this.streamBugWord;
+			diff |= word ^ bugword;
+			P[i] = P[i] ^ (sign_ext_bug ? bugword : word);
 		}
 
-		int sign = signp[0];
+		int sign = this.streamSign;
 
 		/*
 		 * At this point, "diff" is zero iff the correct and buggy algorithms produced
@@ -491,22 +558,24 @@ public class BCrypt {
 		 * that could be directly specified by a password to the buggy algorithm (and to
 		 * the fully correct one as well, but that's a side-effect).
 		 */
-		this.P[0] ^= sign;
+		P[0] ^= sign;
+
+		this.streamOff = 0;
 
 		for (i = 0; i < plen; i += 2) {
-			lr[0] ^= streamtoword(data, doffp);
-			lr[1] ^= streamtoword(data, doffp);
+			lr[0] ^= streamtoword(data, data.length);
+			lr[1] ^= streamtoword(data, data.length);
 			encipher(lr, 0);
-			this.P[i] = lr[0];
-			this.P[i + 1] = lr[1];
+			P[i] = lr[0];
+			P[i + 1] = lr[1];
 		}
 
 		for (i = 0; i < slen; i += 2) {
-			lr[0] ^= streamtoword(data, doffp);
-			lr[1] ^= streamtoword(data, doffp);
+			lr[0] ^= streamtoword(data, data.length);
+			lr[1] ^= streamtoword(data, data.length);
 			encipher(lr, 0);
-			this.S[i] = lr[0];
-			this.S[i + 1] = lr[1];
+			S[i] = lr[0];
+			S[i + 1] = lr[1];
 		}
 	}
 
@@ -518,17 +587,19 @@ public class BCrypt {
 	}
 
 	/**
-	 * Perform the central password hashing step in the bcrypt scheme
+	 * Perform the central password hashing step in the bcrypt scheme. The salt must
+	 * already be decoded into saltb.
 	 * @param password the password to hash
-	 * @param salt the binary salt to hash with the password
+	 * @param keylen the length of the password material, including any trailing NUL
+	 * @param saltlen the number of salt bytes decoded into saltb
 	 * @param log_rounds the binary logarithm of the number of rounds of hashing to apply
 	 * @param sign_ext_bug true to implement the 2x bug
 	 * @param safety bit 16 is set when the safety measure is requested
-	 * @return an array containing the binary hashed password
+	 * @return the reused buffer holding the binary hashed password
 	 */
-	private byte[] crypt_raw(byte password[], byte salt[], int log_rounds, boolean sign_ext_bug, int safety,
-			boolean for_check) {
-		int cdata[] = bf_crypt_ciphertext.clone();
+	private byte[] crypt_raw(byte password[], int keylen, int saltlen, int log_rounds, boolean sign_ext_bug,
+			int safety, boolean for_check) {
+		final int cdata[] = this.cdata;
 		int clen = cdata.length;
 
 		long rounds;
@@ -548,15 +619,19 @@ public class BCrypt {
 			}
 		}
 
-		if (salt.length != BCRYPT_SALT_LEN) {
+		if (saltlen != BCRYPT_SALT_LEN) {
 			throw new IllegalArgumentException("Bad salt length");
 		}
+		if (keylen == 0) {
+			throw new IllegalArgumentException("Empty password requires a $2a$ or later salt");
+		}
 
+		System.arraycopy(bf_crypt_ciphertext, 0, cdata, 0, clen);
 		init_key();
-		ekskey(salt, password, sign_ext_bug, safety);
-		for (int i = 0; i < rounds; i++) {
-			key(password, sign_ext_bug, safety);
-			key(salt, false, safety);
+		ekskey(this.saltb, password, keylen, sign_ext_bug, safety);
+		for (long i = 0; i < rounds; i++) {
+			key(password, keylen, sign_ext_bug);
+			key(this.saltb, BCRYPT_SALT_LEN, false);
 		}
 
 		for (int i = 0; i < 64; i++) {
@@ -565,7 +640,7 @@ public class BCrypt {
 			}
 		}
 
-		byte[] ret = new byte[clen * 4];
+		final byte ret[] = this.hashed;
 		for (int i = 0, j = 0; i < clen; i++) {
 			ret[j++] = (byte) ((cdata[i] >> 24) & 0xff);
 			ret[j++] = (byte) ((cdata[i] >> 16) & 0xff);
@@ -593,6 +668,23 @@ public class BCrypt {
 		return hashpw(passwordb, salt);
 	}
 
+	/**
+	 * Hash a password using the OpenBSD bcrypt scheme. The intermediate UTF-8 bytes are
+	 * wiped before returning, so the caller can clear the password array afterwards.
+	 * @param password the password to hash, as a char array
+	 * @param salt the salt to hash with (perhaps generated using BCrypt.gensalt)
+	 * @return the hashed password
+	 */
+	public static String hashpw(char password[], String salt) {
+		byte passwordb[] = utf8(password);
+		try {
+			return hashpw(passwordb, salt);
+		}
+		finally {
+			Arrays.fill(passwordb, (byte) 0);
+		}
+	}
+
 	/**
 	 * Hash a password using the OpenBSD bcrypt scheme
 	 * @param passwordb the password to hash, as a byte array
@@ -605,11 +697,9 @@ public class BCrypt {
 
 	private static String hashpw(byte passwordb[], String salt, boolean for_check) {
 		BCrypt B;
-		String real_salt;
-		byte saltb[], hashed[];
+		byte hashed[];
 		char minor = (char) 0;
-		int rounds, off;
-		StringBuilder rs = new StringBuilder();
+		int rounds, off, saltlen, keylen, pos;
 
 		if (salt == null) {
 			throw new IllegalArgumentException("salt cannot be null");
@@ -643,31 +733,31 @@ public class BCrypt {
 		if (off == 4 && saltLength < 29) {
 			throw new IllegalArgumentException("Invalid salt");
 		}
-		rounds = Integer.parseInt(salt.substring(off, off + 2));
+		rounds = Integer.parseInt(salt, off, off + 2, 10);
 
-		real_salt = salt.substring(off + 3, off + 25);
-		saltb = decode_base64(real_salt, BCRYPT_SALT_LEN);
+		B = STATE.get();
+		saltlen = decode_base64(salt, off + 3, off + 25, BCRYPT_SALT_LEN, B.saltb);
 
-		if (minor >= 'a') {
-			passwordb = Arrays.copyOf(passwordb, passwordb.length + 1);
-		}
+		// the trailing NUL of $2a$ and later is read past the end instead of copying the password
+		keylen = minor >= 'a' ? passwordb.length + 1 : passwordb.length;
 
-		B = new BCrypt();
-		hashed = B.crypt_raw(passwordb, saltb, rounds, minor == 'x', minor == 'a' ? 0x10000 : 0, for_check);
+		hashed = B.crypt_raw(passwordb, keylen, saltlen, rounds, minor == 'x', minor == 'a' ? 0x10000 : 0,
+				for_check);
 
-		rs.append("$2");
+		char rs[] = new char[(minor >= 'a' ? 7 : 6) + 22 + 31];
+		pos = 0;
+		rs[pos++] = '$';
+		rs[pos++] = '2';
 		if (minor >= 'a') {
-			rs.append(minor);
-		}
-		rs.append("$");
-		if (rounds < 10) {
-			rs.append("0");
-		}
-		rs.append(rounds);
-		rs.append("$");
-		encode_base64(saltb, saltb.length, rs);
-		encode_base64(hashed, bf_crypt_ciphertext.length * 4 - 1, rs);
-		return rs.toString();
+			rs[pos++] = minor;
+		}
+		rs[pos++] = '$';
+		rs[pos++] = (char) ('0' + rounds / 10);
+		rs[pos++] = (char) ('0' + rounds % 10);
+		rs[pos++] = '$';
+		pos = encode_base64(B.saltb, saltlen, rs, pos);
+		pos = encode_base64(hashed, bf_crypt_ciphertext.length * 4 - 1, rs, pos);
+		return new String(rs, 0, pos);
 	}
 
 	/**
@@ -680,7 +770,6 @@ public class BCrypt {
 	 * @exception IllegalArgumentException if prefix or log_rounds is invalid
 	 */
 	public static String gensalt(String prefix, int log_rounds, SecureRandom random) throws IllegalArgumentException {
-		StringBuilder rs = new StringBuilder();
 		byte rnd[] = new byte[BCRYPT_SALT_LEN];
 
 		if (!prefix.startsWith("$2")
@@ -693,16 +782,17 @@ public class BCrypt {
 
 		random.nextBytes(rnd);
 
-		rs.append("$2");
-		rs.append(prefix.charAt(2));
-		rs.append("$");
-		if (log_rounds < 10) {
-			rs.append("0");
-		}
-		rs.append(log_rounds);
-		rs.append("$");
-		encode_base64(rnd, rnd.length, rs);
-		return rs.toString();
+		char rs[] = new char[7 + 22];
+		int pos = 0;
+		rs[pos++] = '$';
+		rs[pos++] = '2';
+		rs[pos++] = prefix.charAt(2);
+		rs[pos++] = '$';
+		rs[pos++] = (char) ('0' + log_rounds / 10);
+		rs[pos++] = (char) ('0' + log_rounds % 10);
+		rs[pos++] = '$';
+		encode_base64(rnd, rnd.length, rs, pos);
+		return new String(rs);
 	}
 
 	/**
@@ -714,7 +804,7 @@ public class BCrypt {
 	 * @exception IllegalArgumentException if prefix or log_rounds is invalid
 	 */
 	public static String gensalt(String prefix, int log_rounds) throws IllegalArgumentException {
-		return gensalt(prefix, log_rounds, new SecureRandom());
+		return gensalt(prefix, log_rounds, RANDOM);
 	}
 
 	/**
@@ -737,7 +827,7 @@ public class BCrypt {
 	 * @exception IllegalArgumentException if log_rounds is invalid
 	 */
 	public static String gensalt(int log_rounds) throws IllegalArgumentException {
-		return gensalt(log_rounds, new SecureRandom());
+		return gensalt(log_rounds, RANDOM);
 	}
 
 	public static String gensalt(String prefix) {
@@ -764,6 +854,23 @@ public class BCrypt {
 		return equalsNoEarlyReturn(hashed, hashpwforcheck(passwordb, hashed));
 	}
 
+	/**
+	 * Check that a password (as a char array) matches a previously hashed one. The
+	 * intermediate UTF-8 bytes are wiped before returning.
+	 * @param plaintext the password to verify, as a char array
+	 * @param hashed the previously-hashed password
+	 * @return true if the passwords match, false otherwise
+	 */
+	public static boolean checkpw(char[] plaintext, String hashed) {
+		byte[] passwordb = utf8(plaintext);
+		try {
+			return checkpw(passwordb, hashed);
+		}
+		finally {
+			Arrays.fill(passwordb, (byte) 0);
+		}
+	}
+
 	/**
 	 * Check that a password (as a byte array) matches a previously hashed one
 	 * @param passwordb the password to verify, as a byte array
@@ -776,7 +883,19 @@ public class BCrypt {
 	}
 
 	static boolean equalsNoEarlyReturn(String a, String b) {
-		return MessageDigest.isEqual(a.getBytes(StandardCharsets.UTF_8), b.getBytes(StandardCharsets.UTF_8));
+		int alen = a.length(), blen = b.length();
+		int diff = alen ^ blen;
+		for (int i = 0; i < alen && i < blen; i++) {
+			diff |= a.charAt(i) ^ b.charAt(i);
+		}
+		return diff == 0;
+	}
+
+	private static byte[] utf8(char chars[]) {
+		ByteBuffer buffer = StandardCharsets.UTF_8.encode(CharBuffer.wrap(chars));
+		byte bytes[] = Arrays.copyOfRange(buffer.array(), buffer.position(), buffer.limit());
+		Arrays.fill(buffer.array(), (byte) 0);
+		return bytes;
 	}
 
-}
\ No newline at end of file
+}
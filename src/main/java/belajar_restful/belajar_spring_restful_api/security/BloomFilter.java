@@ -0,0 +1,46 @@
+package belajar_restful.belajar_spring_restful_api.security;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over keys that are already uniformly random, such as MAC outputs, so the
+ * two base hashes are taken from the key itself. Adding is lock-free.
+ */
+class BloomFilter {
+
+    private final AtomicLongArray bits;
+
+    private final long size;
+
+    private final int hashes;
+
+    BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(1, expectedInsertions);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bits = new AtomicLongArray((int) ((m + 63) / 64));
+        this.size = bits.length() * 64L;
+        this.hashes = Math.max(1, (int) Math.round((double) m / n * Math.log(2)));
+    }
+
+    void add(long hash1, long hash2) {
+        for (int i = 0; i < hashes; i++) {
+            long index = Math.floorMod(hash1 + i * hash2, size);
+            long mask = 1L << index;
+            int word = (int) (index >>> 6);
+            long current;
+            do {
+                current = bits.get(word);
+            } while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    boolean mightContain(long hash1, long hash2) {
+        for (int i = 0; i < hashes; i++) {
+            long index = Math.floorMod(hash1 + i * hash2, size);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,216 @@
+package belajar_restful.belajar_spring_restful_api.security;
+
+import belajar_restful.belajar_spring_restful_api.model.WebResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token buckets per client in front of the API, with separate budgets for login, writes
+ * and reads. Every request is charged to its IP. A request whose token is already known to
+ * be valid (cached session or good signature) is charged to the token as well, so one token
+ * cannot be spread over many IPs. Unknown tokens get no bucket of their own: rotating made-up
+ * tokens neither escapes the IP limit nor fills the key cache. Tracked keys are capped, the
+ * least recently used ones go first.
+ * <p>
+ * The IP is the one Tomcat resolved: behind a trusted proxy that is the client from
+ * {@code X-Forwarded-For} ({@code server.forward-headers-strategy=native}), otherwise every
+ * client of the proxy would share a single bucket.
+ */
+@Component
+@Slf4j
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final ObjectMapper objectMapper;
+
+    private final SessionCache sessionCache;
+
+    private final TokenSigner tokenSigner;
+
+    private final boolean enabled;
+
+    private final Budget login;
+
+    private final Budget write;
+
+    private final Budget read;
+
+    private final Cache<String, TokenBucket> buckets;
+
+    public RateLimitFilter(ObjectMapper objectMapper,
+                           SessionCache sessionCache,
+                           TokenSigner tokenSigner,
+                           MeterRegistry meterRegistry,
+                           @Value("${app.rate-limit.enabled:true}") boolean enabled,
+                           @Value("${app.rate-limit.max-keys:100000}") long maxKeys,
+                           @Value("${app.rate-limit.login.capacity:10}") int loginCapacity,
+                           @Value("${app.rate-limit.login.period:1m}") Duration loginPeriod,
+                           @Value("${app.rate-limit.write.capacity:120}") int writeCapacity,
+                           @Value("${app.rate-limit.write.period:1m}") Duration writePeriod,
+                           @Value("${app.rate-limit.read.capacity:600}") int readCapacity,
+                           @Value("${app.rate-limit.read.period:1m}") Duration readPeriod) {
+        this.objectMapper = objectMapper;
+        this.sessionCache = sessionCache;
+        this.tokenSigner = tokenSigner;
+        this.enabled = enabled;
+        this.login = new Budget("login", loginCapacity, loginPeriod, meterRegistry);
+        this.write = new Budget("write", writeCapacity, writePeriod, meterRegistry);
+        this.read = new Budget("read", readCapacity, readPeriod, meterRegistry);
+        // an idle bucket is full again after one period, so it can be dropped by then
+        Duration longest = max(loginPeriod, max(writePeriod, readPeriod));
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(longest)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, buckets, "rate-limit");
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Budget budget = budget(request);
+        long waitNanos = tryConsume(budget, "ip:" + request.getRemoteAddr());
+
+        if (waitNanos == 0 && budget != login) {
+            Optional<String> tokenKey = knownTokenKey(request.getHeader("X-API-TOKEN"));
+            if (tokenKey.isPresent()) {
+                waitNanos = tryConsume(budget, "token:" + tokenKey.get());
+            }
+        }
+
+        if (waitNanos > 0) {
+            budget.throttled.increment();
+            reject(response, waitNanos);
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private long tryConsume(Budget budget, String clientKey) {
+        String key = budget.name + ":" + clientKey;
+        long waitNanos = buckets.get(key, ignored -> new TokenBucket(budget)).tryConsume(System.nanoTime());
+        if (waitNanos > 0) {
+            log.debug("Rate limited budget={} key={}", budget.name, key);
+        }
+        return waitNanos;
+    }
+
+    // a signed token is keyed on its verified signature, so spellings of one token share a bucket
+    private Optional<String> knownTokenKey(String token) {
+        if (Objects.isNull(token)) {
+            return Optional.empty();
+        }
+        if (sessionCache.contains(token)) {
+            return Optional.of(token);
+        }
+        return tokenSigner.verify(token).map(TokenSigner.Claims::signature);
+    }
+
+    public void reset() {
+        buckets.invalidateAll();
+    }
+
+    private Budget budget(HttpServletRequest request) {
+        if (HttpMethod.POST.matches(request.getMethod()) && "/api/auth/login".equals(request.getRequestURI())) {
+            return login;
+        }
+        if (HttpMethod.GET.matches(request.getMethod()) || HttpMethod.HEAD.matches(request.getMethod())) {
+            return read;
+        }
+        return write;
+    }
+
+    private void reject(HttpServletResponse response, long waitNanos) throws IOException {
+        long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(),
+                WebResponse.<String>builder().errors("Too many requests").build());
+    }
+
+    private static Duration max(Duration first, Duration second) {
+        return first.compareTo(second) >= 0 ? first : second;
+    }
+
+    private static final class Budget {
+
+        private final String name;
+
+        // time to earn back one request
+        private final long intervalNanos;
+
+        // how far ahead of now the bucket may be booked, i.e. capacity - 1 requests
+        private final long burstNanos;
+
+        private final Counter throttled;
+
+        private Budget(String name, int capacity, Duration period, MeterRegistry meterRegistry) {
+            this.name = name;
+            this.intervalNanos = period.toNanos() / capacity;
+            this.burstNanos = intervalNanos * (capacity - 1);
+            this.throttled = Counter.builder("http.server.requests.throttled")
+                    .tag("budget", name)
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Token bucket kept as the single time at which it is full again (GCRA), so a request
+     * is one compare-and-set and never takes a lock.
+     */
+    private static final class TokenBucket {
+
+        private final Budget budget;
+
+        private final AtomicLong fullAt;
+
+        private TokenBucket(Budget budget) {
+            this.budget = budget;
+            this.fullAt = new AtomicLong(System.nanoTime());
+        }
+
+        // returns 0 when allowed, otherwise how long until a token is available
+        private long tryConsume(long now) {
+            while (true) {
+                long current = fullAt.get();
+                long start = current - now < 0 ? now : current;
+                long wait = start - now - budget.burstNanos;
+                if (wait > 0) {
+                    return wait;
+                }
+                if (fullAt.compareAndSet(current, start + budget.intervalNanos)) {
+                    return 0;
+                }
+            }
+        }
+    }
+}
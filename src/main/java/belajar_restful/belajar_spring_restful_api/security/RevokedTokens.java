@@ -0,0 +1,108 @@
+package belajar_restful.belajar_spring_restful_api.security;
+
+import belajar_restful.belajar_spring_restful_api.entity.RevokedToken;
+import belajar_restful.belajar_spring_restful_api.repository.RevokedTokenRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Deny list for signed tokens revoked before they expire. Revocations are stored in
+ * {@code revoked_tokens}; every instance keeps a bloom filter of them, so checking a token
+ * that was never revoked stays in memory and only a filter hit costs a query.
+ * <p>
+ * The filter is rebuilt periodically to pick up revocations made on other instances and to
+ * forget expired ones.
+ */
+@Component
+@Slf4j
+public class RevokedTokens {
+
+    private final RevokedTokenRepository revokedTokenRepository;
+
+    private final TransactionTemplate ownTransaction;
+
+    private final long expectedRevocations;
+
+    private final double falsePositiveRate;
+
+    private final Counter lookups;
+
+    private volatile BloomFilter current;
+
+    // set while a rebuild loads the table, so revocations made meanwhile land in both
+    private volatile BloomFilter building;
+
+    public RevokedTokens(RevokedTokenRepository revokedTokenRepository,
+                         PlatformTransactionManager transactionManager,
+                         MeterRegistry meterRegistry,
+                         @Value("${app.auth.revocation.expected-revocations:100000}") long expectedRevocations,
+                         @Value("${app.auth.revocation.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.ownTransaction = new TransactionTemplate(transactionManager);
+        this.ownTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.expectedRevocations = expectedRevocations;
+        this.falsePositiveRate = falsePositiveRate;
+        this.lookups = Counter.builder("tokens.revocation.lookups").register(meterRegistry);
+        this.current = new BloomFilter(expectedRevocations, falsePositiveRate);
+    }
+
+    public void revoke(TokenSigner.Claims claims) {
+        // committed on its own, not with the caller's transaction, before any filter has it:
+        // a filter hit must find the row, and a rebuild starting after this point must read it
+        ownTransaction.executeWithoutResult(status ->
+                revokedTokenRepository.save(new RevokedToken(claims.signature(), claims.expiredAt())));
+        ByteBuffer hash = hash(claims.signature());
+        BloomFilter next = building;
+        if (next != null) {
+            next.add(hash.getLong(0), hash.getLong(8));
+        }
+        current.add(hash.getLong(0), hash.getLong(8));
+    }
+
+    public boolean isRevoked(TokenSigner.Claims claims) {
+        ByteBuffer hash = hash(claims.signature());
+        if (!current.mightContain(hash.getLong(0), hash.getLong(8))) {
+            return false;
+        }
+        lookups.increment();
+        return revokedTokenRepository.existsById(claims.signature());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${app.auth.revocation.refresh-interval:30s}",
+            fixedDelayString = "${app.auth.revocation.refresh-interval:30s}")
+    public void refresh() {
+        BloomFilter next = new BloomFilter(expectedRevocations, falsePositiveRate);
+        building = next;
+        try {
+            List<String> signatures = revokedTokenRepository.findActiveSignatures(System.currentTimeMillis());
+            for (String signature : signatures) {
+                ByteBuffer hash = hash(signature);
+                next.add(hash.getLong(0), hash.getLong(8));
+            }
+            current = next;
+            if (signatures.size() > expectedRevocations) {
+                log.warn("{} revoked tokens, more than the {} the filter is sized for", signatures.size(), expectedRevocations);
+            }
+        } finally {
+            building = null;
+        }
+    }
+
+    private ByteBuffer hash(String signature) {
+        return ByteBuffer.wrap(Base64.getUrlDecoder().decode(signature));
+    }
+}
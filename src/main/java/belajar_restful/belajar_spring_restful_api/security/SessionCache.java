@@ -0,0 +1,104 @@
+package belajar_restful.belajar_spring_restful_api.security;
+
+import belajar_restful.belajar_spring_restful_api.entity.User;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token to user cache used by the argument resolver so an authenticated request does not
+ * need a database round-trip. Entries never outlive the token itself.
+ */
+@Component
+public class SessionCache implements MeterBinder {
+
+    private final Cache<String, User> cache;
+
+    public SessionCache(@Value("${app.session-cache.maximum-size:10000}") long maximumSize,
+                        @Value("${app.session-cache.ttl:5m}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new TokenExpiry(ttl))
+                .recordStats()
+                .build();
+    }
+
+    public Optional<User> get(String token) {
+        return Optional.ofNullable(cache.getIfPresent(token)).map(this::copy);
+    }
+
+    // for callers that only need to know, so the session hit ratio keeps counting real lookups
+    public boolean contains(String token) {
+        return Objects.nonNull(cache.policy().getIfPresentQuietly(token));
+    }
+
+    public void put(User user) {
+        if (Objects.isNull(user.getToken()) || Objects.isNull(user.getTokenExpiredAt())
+                || user.getTokenExpiredAt() < System.currentTimeMillis()) {
+            return;
+        }
+        cache.put(user.getToken(), copy(user));
+    }
+
+    public void invalidate(String token) {
+        if (Objects.isNull(token)) {
+            return;
+        }
+        cache.invalidate(token);
+
+        // a concurrent request may reload the old row before our transaction commits
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(token);
+                }
+            });
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "session");
+    }
+
+    private User copy(User user) {
+        return new User(user.getUsername(), user.getPassword(), user.getName(),
+                user.getToken(), user.getTokenExpiredAt(), null);
+    }
+
+    private record TokenExpiry(Duration ttl) implements Expiry<String, User> {
+
+        @Override
+        public long expireAfterCreate(String token, User user, long currentTime) {
+            long untilTokenExpired = TimeUnit.MILLISECONDS.toNanos(user.getTokenExpiredAt() - System.currentTimeMillis());
+            return Math.max(0, Math.min(ttl.toNanos(), untilTokenExpired));
+        }
+
+        @Override
+        public long expireAfterUpdate(String token, User user, long currentTime, long currentDuration) {
+            return expireAfterCreate(token, user, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String token, User user, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
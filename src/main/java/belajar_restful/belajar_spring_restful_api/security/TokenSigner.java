@@ -0,0 +1,105 @@
+package belajar_restful.belajar_spring_restful_api.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * Issues and verifies self-contained tokens of the form
+ * {@code base64url(username).expiredAt.base64url(HMAC-SHA256)}, so a request can be
+ * authenticated without a database lookup.
+ * <p>
+ * Login only issues them when {@code app.auth.token-mode=signed}. Without a configured
+ * {@code app.auth.signing-key} a random key is used, which does not survive a restart and
+ * is not shared between instances.
+ */
+@Component
+@Slf4j
+public class TokenSigner {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final boolean enabled;
+
+    private final ThreadLocal<Mac> mac;
+
+    public TokenSigner(@Value("${app.auth.token-mode:opaque}") String tokenMode,
+                       @Value("${app.auth.signing-key:}") String signingKey) {
+        this.enabled = "signed".equals(tokenMode);
+
+        byte[] key;
+        if (signingKey.isBlank()) {
+            key = new byte[32];
+            new SecureRandom().nextBytes(key);
+            if (enabled) {
+                log.warn("No app.auth.signing-key configured, signed tokens will not survive a restart");
+            }
+        } else {
+            key = Base64.getDecoder().decode(signingKey);
+        }
+
+        SecretKeySpec keySpec = new SecretKeySpec(key, ALGORITHM);
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac instance = Mac.getInstance(ALGORITHM);
+                instance.init(keySpec);
+                return instance;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String issue(String username, long expiredAt) {
+        String payload = ENCODER.encodeToString(username.getBytes(StandardCharsets.UTF_8)) + "." + expiredAt;
+        return payload + "." + ENCODER.encodeToString(sign(payload));
+    }
+
+    public Optional<Claims> verify(String token) {
+        int first = token.indexOf('.');
+        int last = token.lastIndexOf('.');
+        if (first <= 0 || last == first || last == token.length() - 1) {
+            return Optional.empty();
+        }
+
+        try {
+            String payload = token.substring(0, last);
+            String signature = token.substring(last + 1);
+            byte[] decoded = DECODER.decode(signature);
+            // the last character has unused bits, so several strings decode to the same MAC;
+            // only the one issue() writes is accepted, revocations are keyed on that string
+            if (!MessageDigest.isEqual(sign(payload), decoded) || !ENCODER.encodeToString(decoded).equals(signature)) {
+                return Optional.empty();
+            }
+            String username = new String(DECODER.decode(token.substring(0, first)), StandardCharsets.UTF_8);
+            long expiredAt = Long.parseLong(token, first + 1, last, 10);
+            return Optional.of(new Claims(username, expiredAt, signature));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    private byte[] sign(String payload) {
+        return mac.get().doFinal(payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public record Claims(String username, long expiredAt, String signature) {
+    }
+}
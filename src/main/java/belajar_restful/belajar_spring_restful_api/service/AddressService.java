@@ -4,21 +4,37 @@ package belajar_restful.belajar_spring_restful_api.service;
 import belajar_restful.belajar_spring_restful_api.entity.Address;
 import belajar_restful.belajar_spring_restful_api.entity.Contact;
 import belajar_restful.belajar_spring_restful_api.entity.User;
+import belajar_restful.belajar_spring_restful_api.model.AddressItemRequest;
 import belajar_restful.belajar_spring_restful_api.model.AddressResponse;
 import belajar_restful.belajar_spring_restful_api.model.CreateAddressRequest;
+import belajar_restful.belajar_spring_restful_api.model.ReplaceAddressesRequest;
 import belajar_restful.belajar_spring_restful_api.model.UpdateAddressRequest;
 import belajar_restful.belajar_spring_restful_api.repository.AddressRepository;
 import belajar_restful.belajar_spring_restful_api.repository.ContactRepository;
+import belajar_restful.belajar_spring_restful_api.util.UuidV7;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import static belajar_restful.belajar_spring_restful_api.CacheConfiguration.ADDRESSES;
+import static belajar_restful.belajar_spring_restful_api.CacheConfiguration.ADDRESS_LISTS;
+
 @Service
 public class AddressService {
 
@@ -31,6 +47,10 @@ public class AddressService {
     @Autowired
     private ValidationService validationService;
 
+    @Autowired
+    private CacheManager cacheManager;
+
+    @CacheEvict(cacheNames = ADDRESS_LISTS, key = "#user.username + ':' + #request.contactId")
     @Transactional
     public AddressResponse create(User user, CreateAddressRequest request) {
         validationService.validate(request);
@@ -39,7 +59,7 @@ public class AddressService {
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Contact is not found"));
 
         Address address = new Address();
-        address.setId(UUID.randomUUID().toString());
+        address.setId(UuidV7.generate());
         address.setContact(contact);
         address.setStreet(request.getStreet());
         address.setCity(request.getCity());
@@ -61,59 +81,129 @@ public class AddressService {
                 .province(address.getProvince())
                 .country(address.getCountry())
                 .postalCode(address.getPostalCode())
+                .version(address.getVersion())
                 .build();
     }
 
+    @Cacheable(cacheNames = ADDRESSES, key = "#user.username + ':' + #contactId + ':' + #addressId", sync = true)
     @Transactional(readOnly = true)
     public AddressResponse get(User user, String contactId, String addressId){
-        Contact contact = contactRepository.findFirstByUserAndId(user, contactId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Contact is not found"));
-
-        Address address = addressRepository.findFirstByContactAndId(contact, addressId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Address is not found"));
+        Address address = addressRepository.findFirstByUsernameAndContactIdAndId(user.getUsername(), contactId, addressId)
+                .orElseThrow(() -> notFound(user, contactId));
 
         return toAddressResponse(address);
     }
 
+    @Caching(evict = {
+            @CacheEvict(cacheNames = ADDRESSES, key = "#user.username + ':' + #request.contactId + ':' + #request.addressId"),
+            @CacheEvict(cacheNames = ADDRESS_LISTS, key = "#user.username + ':' + #request.contactId")
+    })
     @Transactional
     public AddressResponse update(User user, UpdateAddressRequest request){
         validationService.validate(request);
 
-        Contact contact = contactRepository.findFirstByUserAndId(user, request.getContactId())
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Contact is not found"));
-
-        Address address = addressRepository.findFirstByContactAndId(contact, request.getAddressId())
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Address is not found"));
-
+        Address address = addressRepository.findFirstByUsernameAndContactIdAndId(user.getUsername(), request.getContactId(), request.getAddressId())
+                .orElseThrow(() -> notFound(user, request.getContactId()));
+        if(Objects.nonNull(request.getVersion()) && !request.getVersion().equals(address.getVersion())){
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Address has been modified");
+        }
 
         address.setStreet(request.getStreet());
         address.setCity(request.getCity());
         address.setProvince(request.getProvince());
         address.setCountry(request.getCountry());
         address.setPostalCode(request.getPostalCode());
-        addressRepository.save(address);
+        addressRepository.saveAndFlush(address);
 
         return toAddressResponse(address);
     }
 
+    @Caching(evict = {
+            @CacheEvict(cacheNames = ADDRESSES, key = "#user.username + ':' + #contactId + ':' + #addressId"),
+            @CacheEvict(cacheNames = ADDRESS_LISTS, key = "#user.username + ':' + #contactId")
+    })
     @Transactional
     public void remove(User user, String contactId, String addressId){
-        Contact contact = contactRepository.findFirstByUserAndId(user, contactId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Contact is not found"));
+        int deleted = addressRepository.deleteByUsernameAndContactIdAndId(user.getUsername(), contactId, addressId);
+        if(deleted == 0){
+            throw notFound(user, contactId);
+        }
+    }
+
+    /**
+     * Makes the contact's addresses exactly the given list: entries without an id are created,
+     * entries with an id update that address, and addresses left out are deleted. Everything
+     * is flushed as batched statements in one transaction.
+     */
+    @CacheEvict(cacheNames = ADDRESS_LISTS, key = "#user.username + ':' + #request.contactId")
+    @Transactional
+    public List<AddressResponse> replace(User user, ReplaceAddressesRequest request){
+        validationService.validate(request);
 
-        Address address = addressRepository.findFirstByContactAndId(contact, addressId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Address is not found"));
+        Contact contact = contactRepository.findFirstByUserAndId(user, request.getContactId())
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Contact is not found"));
+        Map<String, Address> existing = addressRepository.findAllByUsernameAndContactId(user.getUsername(), contact.getId())
+                .stream()
+                .collect(Collectors.toMap(Address::getId, Function.identity()));
+
+        List<Address> addresses = new ArrayList<>(request.getAddresses().size());
+        Set<String> kept = new HashSet<>();
+        for (AddressItemRequest item : request.getAddresses()) {
+            Address address;
+            if (Objects.isNull(item.getId())) {
+                address = new Address();
+                address.setId(UuidV7.generate());
+                address.setContact(contact);
+            } else {
+                address = existing.get(item.getId());
+                if (Objects.isNull(address)) {
+                    throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Address is not found");
+                }
+                if (!kept.add(item.getId())) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Duplicate address " + item.getId());
+                }
+            }
+            address.setStreet(item.getStreet());
+            address.setCity(item.getCity());
+            address.setProvince(item.getProvince());
+            address.setCountry(item.getCountry());
+            address.setPostalCode(item.getPostalCode());
+            addresses.add(address);
+        }
+
+        List<Address> removed = existing.values().stream()
+                .filter(address -> !kept.contains(address.getId()))
+                .toList();
+        addressRepository.deleteAllInBatch(removed);
+        // unchanged rows are not dirty, so only real changes reach the update batch
+        addressRepository.saveAll(addresses);
+        addressRepository.flush();
+
+        // the cache manager is transaction aware, these run after commit
+        Cache cache = cacheManager.getCache(ADDRESSES);
+        if (Objects.nonNull(cache)) {
+            existing.keySet().forEach(id -> cache.evict(user.getUsername() + ":" + contact.getId() + ":" + id));
+        }
 
-        addressRepository.delete(address);
+        return addresses.stream().map(this::toAddressResponse).toList();
     }
 
+    @Cacheable(cacheNames = ADDRESS_LISTS, key = "#user.username + ':' + #contactId", sync = true)
     @Transactional(readOnly = true)
     public List<AddressResponse> list(User user, String contactId){
-        Contact contact = contactRepository.findFirstByUserAndId(user, contactId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Contact is not found"));
-
-        List<Address> addresses = addressRepository.findAllByContact(contact);
+        List<Address> addresses = addressRepository.findAllByUsernameAndContactId(user.getUsername(), contactId);
+        if(addresses.isEmpty() && !contactRepository.existsByUsernameAndId(user.getUsername(), contactId)){
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Contact is not found");
+        }
         return addresses.stream().map(this::toAddressResponse).toList();
     }
 
+    // the lookups above check ownership and fetch in one statement, so only a miss needs to tell which part is missing
+    private ResponseStatusException notFound(User user, String contactId){
+        if(!contactRepository.existsByUsernameAndId(user.getUsername(), contactId)){
+            return new ResponseStatusException(HttpStatus.NOT_FOUND, "Contact is not found");
+        }
+        return new ResponseStatusException(HttpStatus.NOT_FOUND, "Address is not found");
+    }
+
 }
@@ -4,18 +4,24 @@ import belajar_restful.belajar_spring_restful_api.entity.User;
 import belajar_restful.belajar_spring_restful_api.model.LoginUserRequest;
 import belajar_restful.belajar_spring_restful_api.model.TokenResponse;
 import belajar_restful.belajar_spring_restful_api.repository.UserRepository;
-import belajar_restful.belajar_spring_restful_api.security.BCrypt;
+import belajar_restful.belajar_spring_restful_api.security.RevokedTokens;
+import belajar_restful.belajar_spring_restful_api.security.SessionCache;
+import belajar_restful.belajar_spring_restful_api.security.TokenSigner;
 
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.util.Objects;
+import java.util.Optional;
 import java.util.UUID;
 
 @Service
+@Slf4j
 public class AuthService {
     @Autowired
     private UserRepository userRepository;
@@ -23,35 +29,75 @@ public class AuthService {
     @Autowired
     private ValidationService validationService;
 
-    @Transactional
+    @Autowired
+    private SessionCache sessionCache;
+
+    @Autowired
+    private PasswordService passwordService;
+
+    @Autowired
+    private TokenSigner tokenSigner;
+
+    @Autowired
+    private RevokedTokens revokedTokens;
+
+    // not transactional: no connection is held while the password is checked
     public TokenResponse login(LoginUserRequest request){
         validationService.validate(request);
 
         User user = userRepository.findById(request.getUsername()).orElseThrow(
                 ()-> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Username or password wrong"));
 
-        if(BCrypt.checkpw(request.getPassword(), user.getPassword())){
-            user.setToken(UUID.randomUUID().toString());
-            user.setTokenExpiredAt(next30Days());
-            userRepository.save(user);
+        if(passwordService.check(request.getPassword(), user.getPassword())){
+            Long tokenExpiredAt = next30Days();
+            String token;
+            if(tokenSigner.isEnabled()){
+                token = tokenSigner.issue(user.getUsername(), tokenExpiredAt);
+            } else {
+                token = UUID.randomUUID().toString();
+                userRepository.updateToken(user.getUsername(), token, tokenExpiredAt);
+                sessionCache.invalidate(user.getToken());
+            }
 
+            if(passwordService.needsRehash(user.getPassword())){
+                startRehash(user.getUsername(), request.getPassword(), user.getPassword());
+            }
 
-            return TokenResponse.builder().token(user.getToken()).expiredAt(user.getTokenExpiredAt()).build();
+            return TokenResponse.builder().token(token).expiredAt(tokenExpiredAt).build();
 
         }else{
           throw  new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Username or password wrong");
         }
     }
 
+    private void startRehash(String username, String password, String previousHash){
+        passwordService.rehash(password).thenAccept(hash -> {
+            // only replace the hash we verified, a concurrent password change wins
+            if(Objects.nonNull(hash) && userRepository.updatePassword(username, previousHash, hash) > 0){
+                log.info("Rehashed password of {} with log rounds {}", username, passwordService.getLogRounds());
+            }
+        }).exceptionally(throwable -> {
+            log.warn("Failed to rehash password of {}", username, throwable);
+            return null;
+        });
+    }
+
     private Long next30Days(){
         return System.currentTimeMillis() +  (1000 * 16 * 24 * 30);
     }
 
     @Transactional
     public void logout(User user){
+        Optional<TokenSigner.Claims> claims = tokenSigner.verify(user.getToken());
+        if(claims.isPresent()){
+            revokedTokens.revoke(claims.get());
+            return;
+        }
+
+        sessionCache.invalidate(user.getToken());
         user.setToken(null);
         user.setTokenExpiredAt(null);
 
-        userRepository.save(user);
+        userRepository.clearToken(user.getUsername());
     }
 }
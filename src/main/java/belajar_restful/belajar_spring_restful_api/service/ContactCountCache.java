@@ -0,0 +1,46 @@
+package belajar_restful.belajar_spring_restful_api.service;
+
+import belajar_restful.belajar_spring_restful_api.entity.User;
+import belajar_restful.belajar_spring_restful_api.model.SearchContactRequest;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Short-lived search totals per user and filter, so paging through the same search
+ * does not repeat the count query on every page. Totals may be stale up to the TTL.
+ */
+@Component
+public class ContactCountCache implements MeterBinder {
+
+    private final Cache<CountKey, Long> cache;
+
+    public ContactCountCache(@Value("${app.contact-search.count-cache.maximum-size:10000}") long maximumSize,
+                             @Value("${app.contact-search.count-cache.ttl:30s}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    public long get(User user, SearchContactRequest request, LongSupplier counter) {
+        CountKey key = new CountKey(user.getUsername(), request.getName(), request.getEmail(), request.getPhone());
+        return cache.get(key, ignored -> counter.getAsLong());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "contact.count");
+    }
+
+    private record CountKey(String username, String name, String email, String phone) {
+    }
+}
@@ -0,0 +1,116 @@
+package belajar_restful.belajar_spring_restful_api.service;
+
+import belajar_restful.belajar_spring_restful_api.entity.User;
+import belajar_restful.belajar_spring_restful_api.model.AddressResponse;
+import belajar_restful.belajar_spring_restful_api.model.ExportContactResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Objects;
+
+/**
+ * Writes every contact of a user with its addresses as one JSON object per line. Rows come
+ * from a forward-only streaming result set and each contact is written as soon as its last
+ * address is read, so memory use does not grow with the size of the address book.
+ */
+@Service
+public class ContactExportService {
+
+    private static final String SELECT_CONTACTS = """
+            select c.id, c.first_name, c.last_name, c.email, c.phone,
+                   a.id as address_id, a.street, a.city, a.province, a.country, a.postal_code
+            from contacts c
+            left join addresses a on a.contact_id = c.id
+            where c.username = ?
+            order by c.id
+            """;
+
+    private static final byte NEW_LINE = '\n';
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    public void export(User user, OutputStream outputStream) throws IOException {
+        BufferedOutputStream output = new BufferedOutputStream(outputStream);
+        ExportHandler handler = new ExportHandler(output);
+
+        try {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(SELECT_CONTACTS,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                // MySQL Connector/J only streams rows instead of buffering the whole result for this value
+                statement.setFetchSize(Integer.MIN_VALUE);
+                statement.setString(1, user.getUsername());
+                return statement;
+            }, handler::processRow);
+            handler.flush();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        output.flush();
+    }
+
+    private class ExportHandler {
+
+        private final OutputStream output;
+
+        private ExportContactResponse current;
+
+        ExportHandler(OutputStream output) {
+            this.output = output;
+        }
+
+        void processRow(ResultSet resultSet) throws SQLException {
+            String id = resultSet.getString("id");
+            if (Objects.isNull(current) || !current.getId().equals(id)) {
+                flush();
+                current = ExportContactResponse.builder()
+                        .id(id)
+                        .firstName(resultSet.getString("first_name"))
+                        .lastName(resultSet.getString("last_name"))
+                        .email(resultSet.getString("email"))
+                        .phone(resultSet.getString("phone"))
+                        .addresses(new ArrayList<>())
+                        .build();
+            }
+
+            String addressId = resultSet.getString("address_id");
+            if (Objects.nonNull(addressId)) {
+                current.getAddresses().add(AddressResponse.builder()
+                        .id(addressId)
+                        .street(resultSet.getString("street"))
+                        .city(resultSet.getString("city"))
+                        .province(resultSet.getString("province"))
+                        .country(resultSet.getString("country"))
+                        .postalCode(resultSet.getString("postal_code"))
+                        .build());
+            }
+        }
+
+        void flush() {
+            if (Objects.isNull(current)) {
+                return;
+            }
+            try {
+                output.write(objectMapper.writeValueAsBytes(current));
+                output.write(NEW_LINE);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            current = null;
+        }
+    }
+}
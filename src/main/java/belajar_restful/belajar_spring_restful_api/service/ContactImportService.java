@@ -0,0 +1,188 @@
+package belajar_restful.belajar_spring_restful_api.service;
+
+import belajar_restful.belajar_spring_restful_api.entity.Contact;
+import belajar_restful.belajar_spring_restful_api.entity.User;
+import belajar_restful.belajar_spring_restful_api.model.ImportAddressRequest;
+import belajar_restful.belajar_spring_restful_api.model.ImportContactRequest;
+import belajar_restful.belajar_spring_restful_api.model.ImportContactResponse;
+import belajar_restful.belajar_spring_restful_api.util.UuidV7;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Bulk insert of contacts. The body is read one chunk at a time, each chunk is validated in
+ * parallel and written with JDBC batches in its own transaction, so a large import neither
+ * sits in memory nor holds one long transaction.
+ * <p>
+ * Earlier chunks are already committed when a later element turns out to be unreadable, so
+ * the import stops there and still reports every row saved so far, followed by the row it
+ * stopped at. Rows after it are not imported.
+ */
+@Service
+@Slf4j
+public class ContactImportService {
+
+    private static final String INSERT_CONTACT = """
+            insert into contacts (id, username, first_name, last_name, phone, email,
+                                  email_lower, email_lower_reversed, phone_digits, phone_digits_reversed)
+            values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private static final String INSERT_ADDRESS = """
+            insert into addresses (id, contact_id, street, city, province, country, postal_code)
+            values (?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${app.contact-import.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${app.contact-import.batch-size:500}")
+    private int batchSize;
+
+    public List<ImportContactResponse> importContacts(User user, InputStream body) {
+        List<ImportContactResponse> responses = new ArrayList<>();
+        List<ImportContactRequest> chunk = new ArrayList<>(chunkSize);
+
+        String stoppedAt;
+        try (JsonParser parser = objectMapper.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Import body must be a JSON array");
+            }
+            stoppedAt = readContacts(user, parser, chunk, responses);
+        } catch (JsonProcessingException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Import body must be a JSON array");
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Could not read import body");
+        }
+
+        if (!chunk.isEmpty()) {
+            importChunk(user, responses.size(), chunk, responses);
+        }
+        if (Objects.nonNull(stoppedAt)) {
+            responses.add(ImportContactResponse.builder().index(responses.size()).errors(stoppedAt).build());
+        }
+        return responses;
+    }
+
+    // returns why the import stopped early, or null when the whole array was read
+    private String readContacts(User user, JsonParser parser, List<ImportContactRequest> chunk, List<ImportContactResponse> responses) {
+        try {
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                chunk.add(objectMapper.readValue(parser, ImportContactRequest.class));
+                if (chunk.size() == chunkSize) {
+                    importChunk(user, responses.size(), chunk, responses);
+                    chunk.clear();
+                }
+            }
+            return parser.currentToken() == JsonToken.END_ARRAY ? null : "Not a contact, import stopped at this row";
+        } catch (JsonProcessingException e) {
+            return "Invalid contact, import stopped at this row";
+        } catch (IOException e) {
+            return "Could not read import body, import stopped at this row";
+        }
+    }
+
+    private void importChunk(User user, int firstIndex, List<ImportContactRequest> chunk, List<ImportContactResponse> responses) {
+        List<String> errors = chunk.parallelStream().map(this::validate).toList();
+
+        List<Contact> contacts = new ArrayList<>();
+        List<Object[]> addresses = new ArrayList<>();
+        List<ImportContactResponse> chunkResponses = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            ImportContactResponse response = ImportContactResponse.builder().index(firstIndex + i).build();
+            chunkResponses.add(response);
+            if (Objects.nonNull(errors.get(i))) {
+                response.setErrors(errors.get(i));
+                continue;
+            }
+
+            ImportContactRequest request = chunk.get(i);
+            Contact contact = new Contact();
+            contact.setId(UuidV7.generate());
+            contact.setFirstName(request.getFirstName());
+            contact.setLastName(request.getLastName());
+            contact.setEmail(request.getEmail());
+            contact.setPhone(request.getPhone());
+            contact.normalize();
+            contacts.add(contact);
+            response.setId(contact.getId());
+
+            if (Objects.nonNull(request.getAddresses())) {
+                for (ImportAddressRequest address : request.getAddresses()) {
+                    addresses.add(new Object[]{UuidV7.generate(), contact.getId(), address.getStreet(),
+                            address.getCity(), address.getProvince(), address.getCountry(), address.getPostalCode()});
+                }
+            }
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(INSERT_CONTACT, contacts, batchSize, (statement, contact) -> {
+                    statement.setString(1, contact.getId());
+                    statement.setString(2, user.getUsername());
+                    statement.setString(3, contact.getFirstName());
+                    statement.setString(4, contact.getLastName());
+                    statement.setString(5, contact.getPhone());
+                    statement.setString(6, contact.getEmail());
+                    statement.setString(7, contact.getEmailLower());
+                    statement.setString(8, contact.getEmailLowerReversed());
+                    statement.setString(9, contact.getPhoneDigits());
+                    statement.setString(10, contact.getPhoneDigitsReversed());
+                });
+                jdbcTemplate.batchUpdate(INSERT_ADDRESS, addresses, batchSize, (statement, address) -> {
+                    for (int column = 0; column < address.length; column++) {
+                        statement.setObject(column + 1, address[column]);
+                    }
+                });
+            });
+        } catch (DataAccessException e) {
+            log.warn("Contact import chunk starting at row {} failed", firstIndex, e);
+            chunkResponses.stream()
+                    .filter(response -> Objects.nonNull(response.getId()))
+                    .forEach(response -> {
+                        response.setId(null);
+                        response.setErrors("Could not save contact");
+                    });
+        }
+
+        responses.addAll(chunkResponses);
+    }
+
+    private String validate(ImportContactRequest request) {
+        Set<ConstraintViolation<ImportContactRequest>> violations = validator.validate(request);
+        return violations.isEmpty() ? null : new ConstraintViolationException(violations).getMessage();
+    }
+}
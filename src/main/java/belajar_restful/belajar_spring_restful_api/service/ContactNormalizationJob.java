@@ -0,0 +1,45 @@
+package belajar_restful.belajar_spring_restful_api.service;
+
+import belajar_restful.belajar_spring_restful_api.repository.ContactRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fills the normalised email and phone columns of contacts written before they existed.
+ * Runs in small batches, each in its own transaction, so it never holds long row locks.
+ */
+@Component
+@Slf4j
+public class ContactNormalizationJob {
+
+    @Autowired
+    private ContactRepository contactRepository;
+
+    @Value("${app.contact-normalization.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.contact-normalization.batch-size:1000}")
+    private int batchSize;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        if (!enabled) {
+            return;
+        }
+
+        long total = 0;
+        int updated;
+        do {
+            updated = contactRepository.normalizeBatch(batchSize);
+            total += updated;
+        } while (updated == batchSize);
+
+        if (total > 0) {
+            log.info("Normalised search columns of {} contacts", total);
+        }
+    }
+}
@@ -7,38 +7,68 @@ import belajar_restful.belajar_spring_restful_api.model.CreateContactRequest;
 import belajar_restful.belajar_spring_restful_api.model.SearchContactRequest;
 import belajar_restful.belajar_spring_restful_api.model.UpdateContactRequest;
 import belajar_restful.belajar_spring_restful_api.repository.ContactRepository;
+import belajar_restful.belajar_spring_restful_api.util.UuidV7;
 
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
 import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.data.domain.KeysetScrollPosition;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
-import java.util.UUID;
 import java.util.stream.Collectors;
 
+import static belajar_restful.belajar_spring_restful_api.CacheConfiguration.ADDRESS_LISTS;
+import static belajar_restful.belajar_spring_restful_api.CacheConfiguration.CONTACTS;
+import static belajar_restful.belajar_spring_restful_api.repository.FullTextFunctionContributor.MATCH_AGAINST;
+import static belajar_restful.belajar_spring_restful_api.repository.FullTextFunctionContributor.MATCH_AGAINST_PAIR;
+
 @Service
 public class ContactService {
+    // MySQL default ngram_token_size, shorter terms are not in the FULLTEXT index
+    private static final int NGRAM_TOKEN_SIZE = 2;
+
     @Autowired
     private ContactRepository contactRepository;
     @Autowired
     private ValidationService validationService;
+    @Autowired
+    private ContactCountCache contactCountCache;
+    @Value("${app.contact-search.engine:like}")
+    private String searchEngine;
     
     @Transactional
     public ContactResponse create (User user, CreateContactRequest request){
         validationService.validate(request);
         
         Contact contact = new Contact();
-        contact.setId(UUID.randomUUID().toString());
+        contact.setId(UuidV7.generate());
         contact.setFirstName(request.getFirstName());
         contact.setLastName(request.getLastName());
         contact.setEmail(request.getEmail());
@@ -56,9 +86,11 @@ public class ContactService {
                 .lastName(contact.getLastName())
                 .email(contact.getEmail())
                 .phone(contact.getPhone())
+                .version(contact.getVersion())
                 .build();
     }
 
+    @Cacheable(cacheNames = CONTACTS, key = "#user.username + ':' + #id", sync = true)
     @Transactional(readOnly = true)
     public ContactResponse get (User user,String id){
         Contact contact = contactRepository.findFirstByUserAndId(user, id).orElseThrow(
@@ -67,6 +99,7 @@ public class ContactService {
         return toContactResponse(contact);
     }
 
+    @CacheEvict(cacheNames = CONTACTS, key = "#user.username + ':' + #request.id")
     @Transactional
     public ContactResponse update (User user, UpdateContactRequest request){
         validationService.validate(request);
@@ -75,16 +108,24 @@ public class ContactService {
         Contact contact = contactRepository.findFirstByUserAndId(user, request.getId()).orElseThrow(
                 ()-> new ResponseStatusException(HttpStatus.NOT_FOUND, "Contact Not Found")
         );
+        if(Objects.nonNull(request.getVersion()) && !request.getVersion().equals(contact.getVersion())){
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Contact has been modified");
+        }
 
         contact.setFirstName(request.getFirstName());
         contact.setLastName(request.getLastName());
         contact.setEmail(request.getEmail());
         contact.setPhone(request.getPhone());
-        contactRepository.save(contact);
+        // flush so the response carries the incremented version
+        contactRepository.saveAndFlush(contact);
 
         return toContactResponse(contact);
     }
 
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CONTACTS, key = "#user.username + ':' + #contactId"),
+            @CacheEvict(cacheNames = ADDRESS_LISTS, key = "#user.username + ':' + #contactId")
+    })
     @Transactional
     public void delete(User user, String contactId){
         Contact contact = contactRepository.findFirstByUserAndId(user, contactId).orElseThrow(
@@ -93,36 +134,157 @@ public class ContactService {
         contactRepository.delete(contact);
     }
 
+    /**
+     * Returns a {@link Page} when a total is counted ({@code exact}, the default) or taken from
+     * the count cache ({@code estimate}), and a plain {@link Slice} without any count for {@code none}.
+     */
+    @Transactional(readOnly = true)
+    public Slice<ContactResponse> search(User user, SearchContactRequest request){
+        validationService.validate(request);
+
+        Specification<Contact> specification = searchSpecification(user, request);
+        Pageable pageable = PageRequest.of(request.getPage(), request.getSize());
+
+        if(Objects.isNull(request.getCount()) || request.getCount().equals("exact")){
+            return contactRepository.findAll(specification, pageable).map(this::toContactResponse);
+        }
+
+        // offset positions are exclusive, the first row of page N follows row N * size - 1
+        ScrollPosition position = pageable.getOffset() == 0
+                ? ScrollPosition.offset()
+                : ScrollPosition.offset(pageable.getOffset() - 1);
+        Window<Contact> contacts = contactRepository.findBy(specification, query -> query
+                .limit(request.getSize())
+                .scroll(position));
+        List<ContactResponse> contactResponses = contacts.getContent().stream()
+                .map(this::toContactResponse)
+                .toList();
+
+        if(request.getCount().equals("estimate")){
+            long total = contactCountCache.get(user, request, () -> contactRepository.count(specification));
+            return new PageImpl<>(contactResponses, pageable, total);
+        }
+        return new SliceImpl<>(contactResponses, pageable, contacts.hasNext());
+    }
+
+    /**
+     * Keyset variant of {@link #search}: seeks past the id in the cursor instead of using
+     * OFFSET and runs no count query, so every page costs the same.
+     */
     @Transactional(readOnly = true)
-    public Page<ContactResponse> search(User user, SearchContactRequest request){
-        Specification<Contact> specification = (root, query, builder) -> {
+    public Window<ContactResponse> scroll(User user, SearchContactRequest request){
+        Specification<Contact> specification = searchSpecification(user, request);
+        ScrollPosition position = decodeCursor(request.getCursor());
+
+        Window<Contact> contacts = contactRepository.findBy(specification, query -> query
+                .sortBy(Sort.by("id"))
+                .limit(request.getSize())
+                .scroll(position));
+
+        return contacts.map(this::toContactResponse);
+    }
+
+    public String nextCursor(Window<?> window){
+        if(!window.hasNext() || window.isEmpty()){
+            return null;
+        }
+        KeysetScrollPosition position = (KeysetScrollPosition) window.positionAt(window.size() - 1);
+        String id = position.getKeys().get("id").toString();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(id.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private ScrollPosition decodeCursor(String cursor){
+        if(Objects.isNull(cursor) || cursor.isBlank()){
+            return ScrollPosition.keyset();
+        }
+        try {
+            String id = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            return ScrollPosition.forward(Map.of("id", id));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+
+    private Specification<Contact> searchSpecification(User user, SearchContactRequest request){
+        return (root, query, builder) -> {
             List<Predicate> predicates = new ArrayList<>();
             predicates.add(builder.equal(root.get("user"), user));
             if(Objects.nonNull(request.getName())){
-                predicates.add(builder.or(
-                        builder.like(root.get("firstName"), "%" + request.getName() + "%"),
-                        builder.like(root.get("lastName"), "%" + request.getName() + "%")
-                ));
+                predicates.add(contains(builder, request.getName(), root.get("firstName"), root.get("lastName")));
             }
             if(Objects.nonNull(request.getEmail())){
-                predicates.add(builder.like(root.get("email"), "%" + request.getEmail() + "%"));
+                predicates.add(emailMatches(builder, root, request.getEmail()));
             }
 
             if(Objects.nonNull(request.getPhone())){
-                predicates.add(builder.like(root.get("phone"), "%" + request.getPhone() + "%"));
+                predicates.add(phoneMatches(builder, root, request.getPhone()));
             }
 
             return query.where(predicates.toArray(new Predicate[]{})).getRestriction();
         };
+    }
 
-        Pageable pageable = PageRequest.of(request.getPage(), request.getSize());
-        Page<Contact> contacts =contactRepository.findAll(specification, pageable);
-        List<ContactResponse> contactResponses = contacts.getContent().stream()
-                .map(this::toContactResponse)
-                .toList();
+    /**
+     * {@code abc*} and {@code *abc} are prefix searches on the lowercased and the reversed
+     * lowercased email, so both are index range scans. Anything else is a substring search.
+     */
+    private Predicate emailMatches(CriteriaBuilder builder, Root<Contact> root, String term){
+        String value = trimWildcards(term);
+        if(value.isEmpty() || term.startsWith("*") == term.endsWith("*")){
+            return contains(builder, value, root.get("email"));
+        }
+        String lower = value.toLowerCase(Locale.ROOT);
+        if(term.endsWith("*")){
+            return builder.like(root.get("emailLower"), escapeLike(lower) + "%", '\\');
+        }
+        return builder.like(root.get("emailLowerReversed"), escapeLike(new StringBuilder(lower).reverse().toString()) + "%", '\\');
+    }
+
+    /**
+     * {@code 0812*} and {@code *3456} compare digits only, as prefixes of the normalised and
+     * the reversed phone number, so both are index range scans. Anything else is a substring search.
+     */
+    private Predicate phoneMatches(CriteriaBuilder builder, Root<Contact> root, String term){
+        String digits = Contact.digits(term);
+        if(digits.isEmpty() || term.startsWith("*") == term.endsWith("*")){
+            return contains(builder, trimWildcards(term), root.get("phone"));
+        }
+        if(term.endsWith("*")){
+            return builder.like(root.get("phoneDigits"), digits + "%");
+        }
+        return builder.like(root.get("phoneDigitsReversed"), new StringBuilder(digits).reverse() + "%");
+    }
+
+    private String trimWildcards(String term){
+        int begin = term.startsWith("*") ? 1 : 0;
+        int end = term.endsWith("*") ? term.length() - 1 : term.length();
+        return begin < end ? term.substring(begin, end) : "";
+    }
 
+    private String escapeLike(String value){
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
 
-        return new PageImpl<>(contactResponses, pageable, contacts.getTotalElements());
+    /**
+     * Substring match on any of the columns. Uses the ngram FULLTEXT index on exactly these
+     * columns when the engine is fulltext, and a LIKE scan for terms too short to be indexed.
+     * The fulltext engine is opt-in: it only finds what LIKE finds when the indexes were built
+     * with stopwords off, see database.sql.
+     */
+    @SafeVarargs
+    private Predicate contains(CriteriaBuilder builder, String term, Expression<String>... columns){
+        // a quoted term is an ngram phrase; punctuation and spaces are delimiters to the parser,
+        // so only plain letters and digits are guaranteed to match exactly what LIKE matches
+        if(!searchEngine.equals("fulltext") || term.length() < NGRAM_TOKEN_SIZE
+                || !term.chars().allMatch(Character::isLetterOrDigit)){
+            return builder.or(Arrays.stream(columns)
+                    .map(column -> builder.like(column, "%" + term + "%"))
+                    .toArray(Predicate[]::new));
+        }
 
+        Expression<Double> score = columns.length == 1
+                ? builder.function(MATCH_AGAINST, Double.class, columns[0], builder.literal("\"" + term + "\""))
+                : builder.function(MATCH_AGAINST_PAIR, Double.class, columns[0], columns[1], builder.literal("\"" + term + "\""));
+        return builder.gt(score, 0);
     }
 }
@@ -0,0 +1,80 @@
+package belajar_restful.belajar_spring_restful_api.service;
+
+import belajar_restful.belajar_spring_restful_api.repository.RevokedTokenRepository;
+import belajar_restful.belajar_spring_restful_api.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Clears tokens that expired without a logout, and revocations of signed tokens that have
+ * expired anyway. Works in small batches, each its own
+ * statement and transaction, so only a few rows of {@code users} are locked at a time.
+ */
+@Component
+@Slf4j
+public class ExpiredTokenSweeper {
+
+    private final UserRepository userRepository;
+
+    private final RevokedTokenRepository revokedTokenRepository;
+
+    private final boolean enabled;
+
+    private final int batchSize;
+
+    private final Counter sweptUsers;
+
+    private final Counter sweptRevocations;
+
+    private final Timer duration;
+
+    public ExpiredTokenSweeper(UserRepository userRepository,
+                               RevokedTokenRepository revokedTokenRepository,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.token-sweeper.enabled:true}") boolean enabled,
+                               @Value("${app.token-sweeper.batch-size:500}") int batchSize) {
+        this.userRepository = userRepository;
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.sweptUsers = Counter.builder("tokens.swept").tag("table", "users").register(meterRegistry);
+        this.sweptRevocations = Counter.builder("tokens.swept").tag("table", "revoked_tokens").register(meterRegistry);
+        this.duration = Timer.builder("tokens.sweep").register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${app.token-sweeper.interval:10m}", fixedDelayString = "${app.token-sweeper.interval:10m}")
+    public void sweep() {
+        if (!enabled) {
+            return;
+        }
+
+        Timer.Sample sample = Timer.start();
+        long now = System.currentTimeMillis();
+        long users = 0;
+        long revocations = 0;
+        int updated;
+        do {
+            updated = userRepository.clearExpiredTokens(now, batchSize);
+            users += updated;
+        } while (updated == batchSize);
+        do {
+            updated = revokedTokenRepository.deleteExpired(now, batchSize);
+            revocations += updated;
+        } while (updated == batchSize);
+        sample.stop(duration);
+        sweptUsers.increment(users);
+        sweptRevocations.increment(revocations);
+
+        if (users > 0) {
+            log.info("Cleared {} expired tokens", users);
+        }
+        if (revocations > 0) {
+            log.info("Deleted {} expired token revocations", revocations);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package belajar_restful.belajar_spring_restful_api.service;
+
+import belajar_restful.belajar_spring_restful_api.security.BCrypt;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs BCrypt work on a fixed pool sized to the CPU count instead of on servlet threads.
+ * The queue is bounded, so a login burst is answered with 503 instead of piling up.
+ * <p>
+ * The cost factor is calibrated at startup to the slowest one that still hashes within
+ * the configured target time, unless a fixed value is configured.
+ */
+@Service
+@Slf4j
+public class PasswordService {
+
+    private final ThreadPoolExecutor executor;
+
+    private final Timer hashTimer;
+
+    private final Timer checkTimer;
+
+    private final Counter rejected;
+
+    private final int queueCapacity;
+
+    private final int logRounds;
+
+    public PasswordService(MeterRegistry meterRegistry,
+                           @Value("${app.password-hasher.threads:0}") int threads,
+                           @Value("${app.password-hasher.queue-capacity:100}") int queueCapacity,
+                           @Value("${app.password-hasher.log-rounds:0}") int logRounds,
+                           @Value("${app.password-hasher.min-log-rounds:10}") int minLogRounds,
+                           @Value("${app.password-hasher.max-log-rounds:14}") int maxLogRounds,
+                           @Value("${app.password-hasher.target-hash-time:250ms}") Duration targetHashTime) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.queueCapacity = queueCapacity;
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new HasherThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+        this.logRounds = logRounds > 0 ? logRounds : calibrate(minLogRounds, maxLogRounds, targetHashTime);
+
+        new ExecutorServiceMetrics(executor, "password.hasher", Tags.empty()).bindTo(meterRegistry);
+        this.hashTimer = Timer.builder("password.hash").tag("operation", "hash").register(meterRegistry);
+        this.checkTimer = Timer.builder("password.hash").tag("operation", "check").register(meterRegistry);
+        this.rejected = Counter.builder("password.hash.rejected").register(meterRegistry);
+        Gauge.builder("password.hash.log.rounds", () -> this.logRounds).register(meterRegistry);
+    }
+
+    public String hash(String password) {
+        return execute(hashTimer, () -> BCrypt.hashpw(password, BCrypt.gensalt(logRounds)));
+    }
+
+    public boolean check(String password, String hashed) {
+        return execute(checkTimer, () -> BCrypt.checkpw(password, hashed));
+    }
+
+    public boolean needsRehash(String hashed) {
+        return logRounds(hashed) != logRounds;
+    }
+
+    /**
+     * Hashes in the background with the current cost factor. Returns an empty future
+     * instead of taking queue space a foreground request may need.
+     */
+    public CompletableFuture<String> rehash(String password) {
+        if (executor.getQueue().size() > queueCapacity / 2) {
+            return CompletableFuture.completedFuture(null);
+        }
+        try {
+            return CompletableFuture.supplyAsync(
+                    () -> hashTimer.record(() -> BCrypt.hashpw(password, BCrypt.gensalt(logRounds))), executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    public int getLogRounds() {
+        return logRounds;
+    }
+
+    private int calibrate(int minLogRounds, int maxLogRounds, Duration targetHashTime) {
+        // give the JIT a chance before timing anything
+        for (int i = 0; i < 3; i++) {
+            BCrypt.hashpw("calibration", BCrypt.gensalt(6));
+        }
+
+        int rounds = minLogRounds;
+        long nanos = timeHash(rounds);
+        // every extra round doubles the work, so stop as soon as the next one would overshoot
+        while (rounds < maxLogRounds && nanos * 2 <= targetHashTime.toNanos()) {
+            rounds++;
+            nanos = timeHash(rounds);
+        }
+
+        log.info("Password hashing calibrated to log rounds {} ({} ms per hash, target {} ms)",
+                rounds, TimeUnit.NANOSECONDS.toMillis(nanos), targetHashTime.toMillis());
+        return rounds;
+    }
+
+    private long timeHash(int rounds) {
+        long start = System.nanoTime();
+        BCrypt.hashpw("calibration", BCrypt.gensalt(rounds));
+        return System.nanoTime() - start;
+    }
+
+    private int logRounds(String hashed) {
+        int separator = hashed.indexOf('$', 1);
+        if (separator < 0 || hashed.length() < separator + 3) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(hashed, separator + 1, separator + 3, 10);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private <T> T execute(Timer timer, Callable<T> task) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            log.warn("Password hashing inside a transaction keeps a database connection checked out");
+        }
+
+        Future<T> future;
+        try {
+            future = executor.submit(() -> timer.recordCallable(task));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            log.warn("Password hasher saturated, queue size {}", executor.getQueue().size());
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Server is busy, try again later");
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Server is busy, try again later");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static class HasherThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "password-hasher-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
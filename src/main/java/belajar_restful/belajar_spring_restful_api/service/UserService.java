@@ -7,7 +7,7 @@ import belajar_restful.belajar_spring_restful_api.model.UpdateUserRequest;
 import belajar_restful.belajar_spring_restful_api.model.UserResponse;
 import belajar_restful.belajar_spring_restful_api.model.WebResponse;
 import belajar_restful.belajar_spring_restful_api.repository.UserRepository;
-import belajar_restful.belajar_spring_restful_api.security.BCrypt;
+import belajar_restful.belajar_spring_restful_api.security.SessionCache;
 
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.ConstraintViolationException;
@@ -17,7 +17,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.server.ResponseStatusException;
 
@@ -34,8 +34,17 @@ public class UserService {
     @Autowired
     private ValidationService validationService;
 
+    @Autowired
+    private SessionCache sessionCache;
+
+    @Autowired
+    private PasswordService passwordService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
 
-    @Transactional
+    // hashing runs between the transactions so no connection is held while it does
     public void register(RegisterUserRequest request){
      validationService.validate(request);
 
@@ -45,35 +54,53 @@ public class UserService {
 
      User user = new User();
      user.setUsername(request.getUsername());
-     user.setPassword(BCrypt.hashpw(request.getPassword(), BCrypt.gensalt()));
+     user.setPassword(passwordService.hash(request.getPassword()));
      user.setName(request.getName());
 
-     userRepository.save(user);
+     transactionTemplate.executeWithoutResult(status -> {
+         // checked again, save() would otherwise overwrite a user registered meanwhile
+         if(userRepository.existsById(user.getUsername())){
+             throw new ResponseStatusException(HttpStatus.BAD_REQUEST,"Username already exists");
+         }
+         userRepository.save(user);
+     });
     }
 
     public UserResponse get(User user){
-        return UserResponse.builder().username(user.getUsername()).name(user.getName()).build();
+        // signed tokens only carry the username
+        String name = Objects.nonNull(user.getName()) ? user.getName() : userRepository.findById(user.getUsername())
+                .map(User::getName)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Unauthorized"));
+        return UserResponse.builder().username(user.getUsername()).name(name).build();
     }
 
 
-    @Transactional
     public UserResponse update(User user, UpdateUserRequest request){
         validationService.validate(request);
 
-        if(Objects.nonNull(request.getName())){
-            user.setName(request.getName());
-        }
+        String password = Objects.nonNull(request.getPassword()) ? passwordService.hash(request.getPassword()) : null;
+
+        User current = transactionTemplate.execute(status -> {
+            User found = userRepository.findById(user.getUsername())
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Unauthorized"));
+
+            if(Objects.nonNull(request.getName())){
+                found.setName(request.getName());
+            }
 
-        if(Objects.nonNull(request.getPassword())){
-            user.setPassword(BCrypt.hashpw(request.getPassword(), BCrypt.gensalt()));
-        }
+            if(Objects.nonNull(password)){
+                found.setPassword(password);
+            }
 
-        userRepository.save(user);
-        log.info("USER : {}",user.getName());
+            userRepository.save(found);
+            sessionCache.invalidate(found.getToken());
+            return found;
+        });
+        log.info("USER : {}",current.getName());
 
         return UserResponse.builder()
-                .name(user.getName())
-                .username(user.getUsername())
+                .name(current.getName())
+                .username(current.getUsername())
                 .build();
     }
 
@@ -0,0 +1,44 @@
+package belajar_restful.belajar_spring_restful_api.util;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time-ordered UUIDs (RFC 9562 version 7): a 48-bit millisecond timestamp followed by
+ * random bits. New keys land at the end of the clustered index instead of splitting pages
+ * all over it, and the text form is still the usual 36 characters.
+ * <p>
+ * The 12 bits after the timestamp are a counter, so ids generated in the same millisecond
+ * still increase (RFC 9562 method 3); when it runs out the timestamp is moved ahead by one.
+ * The rest comes from {@link ThreadLocalRandom}, so generation never blocks on SecureRandom.
+ * These ids are not secrets; keep {@link UUID#randomUUID()} for tokens.
+ */
+public final class UuidV7 {
+
+    private static final int COUNTER_BITS = 12;
+
+    // timestamp and counter of the last id, as one value so both advance in a single CAS
+    private static final AtomicLong LAST = new AtomicLong();
+
+    private UuidV7() {
+    }
+
+    public static String generate() {
+        return uuid().toString();
+    }
+
+    public static UUID uuid() {
+        long now = System.currentTimeMillis() << COUNTER_BITS;
+        long last;
+        long next;
+        do {
+            last = LAST.get();
+            next = Math.max(now, last + 1);
+        } while (!LAST.compareAndSet(last, next));
+
+        long mostSigBits = ((next >>> COUNTER_BITS) << 16) | 0x7000L | (next & 0x0FFFL);
+        long leastSigBits = (ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+}
@@ -3,14 +3,17 @@ package belajar_restful.belajar_spring_restful_api.controller;
 import belajar_restful.belajar_spring_restful_api.entity.Address;
 import belajar_restful.belajar_spring_restful_api.entity.Contact;
 import belajar_restful.belajar_spring_restful_api.entity.User;
+import belajar_restful.belajar_spring_restful_api.model.AddressItemRequest;
 import belajar_restful.belajar_spring_restful_api.model.AddressResponse;
 import belajar_restful.belajar_spring_restful_api.model.CreateAddressRequest;
+import belajar_restful.belajar_spring_restful_api.model.ReplaceAddressesRequest;
 import belajar_restful.belajar_spring_restful_api.model.UpdateAddressRequest;
 import belajar_restful.belajar_spring_restful_api.model.WebResponse;
 import belajar_restful.belajar_spring_restful_api.repository.AddressRepository;
 import belajar_restful.belajar_spring_restful_api.repository.ContactRepository;
 import belajar_restful.belajar_spring_restful_api.repository.UserRepository;
 import belajar_restful.belajar_spring_restful_api.security.BCrypt;
+import belajar_restful.belajar_spring_restful_api.security.RateLimitFilter;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
@@ -18,6 +21,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
@@ -50,8 +54,16 @@ class AddressControllerTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private RateLimitFilter rateLimitFilter;
+
     @BeforeEach
     void setUp() {
+        rateLimitFilter.reset();
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
         addressRepository.deleteAll();
         contactRepository.deleteAll();
         userRepository.deleteAll();
@@ -143,6 +155,34 @@ class AddressControllerTest {
         });
     }
 
+    @Test
+    void getAddressContactNotFound() throws Exception {
+
+        mockMvc.perform(
+                get("/api/contacts/salah/addresses/test")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN", "test")
+        ).andExpectAll(
+                status().isNotFound()
+        ).andDo(result -> {
+            WebResponse<String> response = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+            });
+            assertEquals("Contact is not found", response.getErrors());
+        });
+
+        mockMvc.perform(
+                get("/api/contacts/test/addresses/salah")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN", "test")
+        ).andExpectAll(
+                status().isNotFound()
+        ).andDo(result -> {
+            WebResponse<String> response = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+            });
+            assertEquals("Address is not found", response.getErrors());
+        });
+    }
+
     @Test
     void getAddressSuccess() throws Exception {
         Contact contact = contactRepository.findById("test").orElseThrow();
@@ -291,6 +331,34 @@ class AddressControllerTest {
         });
     }
 
+    @Test
+    void listAddressNotModified() throws Exception {
+        Contact contact = contactRepository.findById("test").orElseThrow();
+        Address address = new Address();
+        address.setId("test");
+        address.setContact(contact);
+        address.setCountry("Indonesia");
+        addressRepository.save(address);
+
+        String eTag = mockMvc.perform(
+                get("/api/contacts/test/addresses")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN", "test")
+        ).andExpectAll(
+                status().isOk()
+        ).andReturn().getResponse().getHeader("ETag");
+        assertNotNull(eTag);
+
+        mockMvc.perform(
+                get("/api/contacts/test/addresses")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN", "test")
+                        .header("If-None-Match", eTag)
+        ).andExpectAll(
+                status().isNotModified()
+        );
+    }
+
     @Test
     void listAddressNotFound() throws Exception {
 
@@ -340,4 +408,67 @@ class AddressControllerTest {
         });
     }
 
+    @Test
+    void replaceAddressesSuccess() throws Exception {
+        Contact contact = contactRepository.findById("test").orElseThrow();
+
+        for (String id : List.of("keep", "drop")) {
+            Address address = new Address();
+            address.setId(id);
+            address.setContact(contact);
+            address.setStreet("lama");
+            address.setCountry("Indonesia");
+            addressRepository.save(address);
+        }
+
+        ReplaceAddressesRequest request = new ReplaceAddressesRequest();
+        request.setAddresses(List.of(
+                AddressItemRequest.builder().id("keep").street("Jalan").city("Jakarta").country("Indonesia").build(),
+                AddressItemRequest.builder().street("Baru").city("Bandung").country("Indonesia").build()
+        ));
+
+        mockMvc.perform(
+                put("/api/contacts/test/addresses")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request))
+                        .header("X-API-TOKEN", "test")
+        ).andExpectAll(
+                status().isOk()
+        ).andDo(result -> {
+            WebResponse<List<AddressResponse>> response = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+            });
+            assertNull(response.getErrors());
+            assertEquals(2, response.getData().size());
+            assertEquals("keep", response.getData().get(0).getId());
+            assertEquals("Jalan", response.getData().get(0).getStreet());
+            assertEquals("Baru", response.getData().get(1).getStreet());
+
+            assertEquals("Jalan", addressRepository.findById("keep").orElseThrow().getStreet());
+            assertFalse(addressRepository.existsById("drop"));
+            assertTrue(addressRepository.existsById(response.getData().get(1).getId()));
+            assertEquals(2, addressRepository.count());
+        });
+    }
+
+    @Test
+    void replaceAddressesNotFound() throws Exception {
+        ReplaceAddressesRequest request = new ReplaceAddressesRequest();
+        request.setAddresses(List.of(AddressItemRequest.builder().id("salah").country("Indonesia").build()));
+
+        mockMvc.perform(
+                put("/api/contacts/test/addresses")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request))
+                        .header("X-API-TOKEN", "test")
+        ).andExpectAll(
+                status().isNotFound()
+        ).andDo(result -> {
+            WebResponse<String> response = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+            });
+            assertNotNull(response.getErrors());
+        });
+    }
+
 }
\ No newline at end of file
@@ -1,14 +1,23 @@
 package belajar_restful.belajar_spring_restful_api.controller;
 
+import belajar_restful.belajar_spring_restful_api.entity.RevokedToken;
 import belajar_restful.belajar_spring_restful_api.entity.User;
 import belajar_restful.belajar_spring_restful_api.model.LoginUserRequest;
 import belajar_restful.belajar_spring_restful_api.model.TokenResponse;
+import belajar_restful.belajar_spring_restful_api.model.UserResponse;
 import belajar_restful.belajar_spring_restful_api.model.WebResponse;
+import belajar_restful.belajar_spring_restful_api.repository.RevokedTokenRepository;
 import belajar_restful.belajar_spring_restful_api.repository.UserRepository;
 import belajar_restful.belajar_spring_restful_api.security.BCrypt;
+import belajar_restful.belajar_spring_restful_api.security.RateLimitFilter;
+import belajar_restful.belajar_spring_restful_api.security.SessionCache;
+import belajar_restful.belajar_spring_restful_api.security.TokenSigner;
+import belajar_restful.belajar_spring_restful_api.service.ExpiredTokenSweeper;
+import belajar_restful.belajar_spring_restful_api.service.PasswordService;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,6 +26,8 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.util.Base64;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 import static org.springframework.test.web.servlet.MockMvcBuilder.*;
@@ -36,9 +47,32 @@ class AuthControllerTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private SessionCache sessionCache;
+
+    @Autowired
+    private PasswordService passwordService;
+
+    @Autowired
+    private RateLimitFilter rateLimitFilter;
+
+    @Autowired
+    private ExpiredTokenSweeper expiredTokenSweeper;
+
+    @Autowired
+    private TokenSigner tokenSigner;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
     @BeforeEach
     void setUp() {
         userRepository.deleteAll();
+        sessionCache.invalidateAll();
+        rateLimitFilter.reset();
     }
 
     @Test
@@ -61,6 +95,38 @@ class AuthControllerTest {
         });
     }
 
+    @Test
+    void loginRateLimited() throws Exception {
+        LoginUserRequest request  = new LoginUserRequest();
+        request.setUsername("test");
+        request.setPassword("test");
+
+        for (int i = 0; i < 10; i++) {
+            mockMvc.perform(
+                    post("/api/auth/login")
+                            .accept(MediaType.APPLICATION_JSON)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(request))
+            ).andExpectAll(
+                    status().isUnauthorized()
+            );
+        }
+
+        mockMvc.perform(
+                post("/api/auth/login")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request))
+        ).andExpectAll(
+                status().isTooManyRequests(),
+                header().exists("Retry-After")
+        ).andDo(result -> {
+            WebResponse<String> response = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+            });
+            assertNotNull(response.getErrors());
+        });
+    }
+
     @Test
     void loginFailedWrongPassword() throws Exception {
         User user = new User();
@@ -121,6 +187,68 @@ class AuthControllerTest {
         });
     }
 
+    @Test
+    void loginJsonFields() throws Exception {
+        User user = new User();
+        user.setName("Test");
+        user.setUsername("test");
+        user.setPassword(BCrypt.hashpw("test", BCrypt.gensalt()));
+        userRepository.save(user);
+
+        LoginUserRequest request = new LoginUserRequest();
+        request.setUsername("test");
+        request.setPassword("test");
+
+        mockMvc.perform(
+                post("/api/auth/login")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request))
+        ).andExpectAll(
+                status().isOk(),
+                jsonPath("$.errors").doesNotExist(),
+                jsonPath("$.paging").doesNotExist(),
+                jsonPath("$.data.token").isString(),
+                // expiredAt stays epoch milliseconds, not an ISO date string
+                jsonPath("$.data.expiredAt").isNumber()
+        ).andDo(result -> {
+            User userDb = userRepository.findById("test").orElse(null);
+            assertNotNull(userDb);
+            assertEquals(userDb.getTokenExpiredAt(),
+                    objectMapper.readTree(result.getResponse().getContentAsString()).get("data").get("expiredAt").asLong());
+        });
+    }
+
+    @Test
+    void loginRehashPassword() throws Exception {
+        User user = new User();
+        user.setName("Test");
+        user.setUsername("test");
+        user.setPassword(BCrypt.hashpw("test", BCrypt.gensalt(4)));
+        userRepository.save(user);
+
+        LoginUserRequest request = new LoginUserRequest();
+        request.setUsername("test");
+        request.setPassword("test");
+
+        mockMvc.perform(
+                post("/api/auth/login")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request))
+        ).andExpectAll(
+                status().isOk()
+        );
+
+        User userDb = userRepository.findById("test").orElseThrow();
+        for (int i = 0; i < 50 && passwordService.needsRehash(userDb.getPassword()); i++) {
+            Thread.sleep(100);
+            userDb = userRepository.findById("test").orElseThrow();
+        }
+        assertFalse(passwordService.needsRehash(userDb.getPassword()));
+        assertTrue(BCrypt.checkpw("test", userDb.getPassword()));
+    }
+
     @Test
     void logoutFailed()  throws Exception{
         mockMvc.perform(
@@ -167,4 +295,182 @@ class AuthControllerTest {
                 }
         );
     }
+
+    @Test
+    void logoutInvalidatesSession()  throws Exception{
+        User user = new User();
+        user.setName("test");
+        user.setUsername("test");
+        user.setPassword(BCrypt.hashpw("test", BCrypt.gensalt()));
+        user.setToken("test");
+        user.setTokenExpiredAt(System.currentTimeMillis() + 100000L);
+        userRepository.save(user);
+
+        mockMvc.perform(
+                get("/api/users/current")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header(("X-API-TOKEN"), "test")
+        ).andExpectAll(
+                status().isOk()
+        );
+
+        mockMvc.perform(
+                delete("/api/auth/logout")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header(("X-API-TOKEN"), "test")
+        ).andExpectAll(
+                status().isOk()
+        );
+
+        mockMvc.perform(
+                get("/api/users/current")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header(("X-API-TOKEN"), "test")
+        ).andExpectAll(
+                status().isUnauthorized()
+        ).andDo(
+                result -> {
+                    WebResponse<String> response = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+                    });
+                    assertNotNull(response.getErrors());
+                }
+        );
+    }
+
+    @Test
+    void rateLimitDoesNotCountSessionLookups()  throws Exception{
+        User user = new User();
+        user.setName("test");
+        user.setUsername("test");
+        user.setPassword(BCrypt.hashpw("test", BCrypt.gensalt()));
+        user.setToken("test");
+        user.setTokenExpiredAt(System.currentTimeMillis() + 100000L);
+        userRepository.save(user);
+
+        mockMvc.perform(
+                get("/api/users/current")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header(("X-API-TOKEN"), "test")
+        ).andExpectAll(
+                status().isOk()
+        );
+
+        double hits = sessionHits();
+        mockMvc.perform(
+                get("/api/users/current")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header(("X-API-TOKEN"), "test")
+        ).andExpectAll(
+                status().isOk()
+        );
+        assertEquals(hits + 1, sessionHits());
+    }
+
+    private double sessionHits() {
+        return meterRegistry.get("cache.gets").tag("cache", "session").tag("result", "hit").functionCounter().count();
+    }
+
+    @Test
+    void sweepExpiredTokens() {
+        revokedTokenRepository.deleteAll();
+        revokedTokenRepository.save(new RevokedToken("expired-signature", System.currentTimeMillis() - 1000L));
+        double sweptUsers = swept("users");
+        double sweptRevocations = swept("revoked_tokens");
+
+        for (int i = 0; i < 3; i++) {
+            User user = new User();
+            user.setName("test");
+            user.setUsername("expired-" + i);
+            user.setPassword("test");
+            user.setToken("expired-" + i);
+            user.setTokenExpiredAt(System.currentTimeMillis() - 1000L);
+            userRepository.save(user);
+        }
+        User active = new User();
+        active.setName("test");
+        active.setUsername("active");
+        active.setPassword("test");
+        active.setToken("active");
+        active.setTokenExpiredAt(System.currentTimeMillis() + 100000L);
+        userRepository.save(active);
+
+        expiredTokenSweeper.sweep();
+
+        for (int i = 0; i < 3; i++) {
+            User user = userRepository.findById("expired-" + i).orElseThrow();
+            assertNull(user.getToken());
+            assertNull(user.getTokenExpiredAt());
+        }
+        assertEquals("active", userRepository.findById("active").orElseThrow().getToken());
+        assertFalse(revokedTokenRepository.existsById("expired-signature"));
+        assertEquals(sweptUsers + 3, swept("users"));
+        assertEquals(sweptRevocations + 1, swept("revoked_tokens"));
+    }
+
+    private double swept(String table) {
+        return meterRegistry.get("tokens.swept").tag("table", table).counter().count();
+    }
+
+    @Test
+    void logoutRevokesSignedToken()  throws Exception{
+        User user = new User();
+        user.setName("Test");
+        user.setUsername("test");
+        user.setPassword(BCrypt.hashpw("test", BCrypt.gensalt()));
+        userRepository.save(user);
+
+        String token = tokenSigner.issue("test", System.currentTimeMillis() + 100000L);
+
+        mockMvc.perform(
+                get("/api/users/current")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header(("X-API-TOKEN"), token)
+        ).andExpectAll(
+                status().isOk()
+        ).andDo(result -> {
+            WebResponse<UserResponse> response = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+            });
+            assertEquals("test", response.getData().getUsername());
+            assertEquals("Test", response.getData().getName());
+        });
+
+        mockMvc.perform(
+                delete("/api/auth/logout")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header(("X-API-TOKEN"), token)
+        ).andExpectAll(
+                status().isOk()
+        );
+
+        mockMvc.perform(
+                get("/api/users/current")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header(("X-API-TOKEN"), token)
+        ).andExpectAll(
+                status().isUnauthorized()
+        );
+
+        mockMvc.perform(
+                get("/api/users/current")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header(("X-API-TOKEN"), token.substring(0, token.length() - 2) + "xx")
+        ).andExpectAll(
+                status().isUnauthorized()
+        );
+
+        // same MAC bytes: only the unused low bits of the last character differ
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+        char lastChar = token.charAt(token.length() - 1);
+        String variant = token.substring(0, token.length() - 1) + alphabet.charAt(alphabet.indexOf(lastChar) ^ 1);
+        assertArrayEquals(Base64.getUrlDecoder().decode(token.substring(token.lastIndexOf('.') + 1)),
+                Base64.getUrlDecoder().decode(variant.substring(variant.lastIndexOf('.') + 1)));
+
+        mockMvc.perform(
+                get("/api/users/current")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header(("X-API-TOKEN"), variant)
+        ).andExpectAll(
+                status().isUnauthorized()
+        );
+    }
 }
\ No newline at end of file
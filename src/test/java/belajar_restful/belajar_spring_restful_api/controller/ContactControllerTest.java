@@ -1,26 +1,44 @@
 package belajar_restful.belajar_spring_restful_api.controller;
 
+import belajar_restful.belajar_spring_restful_api.entity.Address;
 import belajar_restful.belajar_spring_restful_api.entity.Contact;
 import belajar_restful.belajar_spring_restful_api.entity.User;
 import belajar_restful.belajar_spring_restful_api.model.ContactResponse;
 import belajar_restful.belajar_spring_restful_api.model.CreateContactRequest;
+import belajar_restful.belajar_spring_restful_api.model.ExportContactResponse;
+import belajar_restful.belajar_spring_restful_api.model.ImportAddressRequest;
+import belajar_restful.belajar_spring_restful_api.model.ImportContactRequest;
+import belajar_restful.belajar_spring_restful_api.model.ImportContactResponse;
 import belajar_restful.belajar_spring_restful_api.model.UpdateContactRequest;
 import belajar_restful.belajar_spring_restful_api.model.WebResponse;
+import belajar_restful.belajar_spring_restful_api.repository.AddressRepository;
 import belajar_restful.belajar_spring_restful_api.repository.ContactRepository;
 import belajar_restful.belajar_spring_restful_api.repository.UserRepository;
 import belajar_restful.belajar_spring_restful_api.security.BCrypt;
+import belajar_restful.belajar_spring_restful_api.security.RateLimitFilter;
+import belajar_restful.belajar_spring_restful_api.service.ContactNormalizationJob;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.servlet.MockMvcBuilder.*;
@@ -41,11 +59,32 @@ class ContactControllerTest {
     @Autowired
     private ContactRepository contactRepository;
 
+    @Autowired
+    private AddressRepository addressRepository;
+
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private RateLimitFilter rateLimitFilter;
+
+    @Autowired
+    private ContactNormalizationJob contactNormalizationJob;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @BeforeEach
     void setUp() {
+        rateLimitFilter.reset();
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+        addressRepository.deleteAll();
         contactRepository.deleteAll();
         userRepository.deleteAll();
 
@@ -175,6 +214,117 @@ class ContactControllerTest {
         );
     }
 
+    @Test
+    void getContactCachedUntilUpdate()  throws Exception {
+        User user = userRepository.findById("test").orElse(null);
+
+        Contact contact = new Contact();
+        contact.setUser(user);
+        contact.setId(UUID.randomUUID().toString());
+        contact.setFirstName("dada");
+        contactRepository.save(contact);
+
+        assertEquals("dada", getContact(contact.getId()).getFirstName());
+
+        // written behind the service's back, so the cached card is still served
+        contact.setFirstName("salah");
+        contactRepository.save(contact);
+        assertEquals("dada", getContact(contact.getId()).getFirstName());
+
+        UpdateContactRequest request = new UpdateContactRequest();
+        request.setFirstName("budi");
+        mockMvc.perform(
+                put("/api/contacts/"+contact.getId())
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request))
+                        .header("X-API-TOKEN","test")
+        ).andExpectAll(
+                status().isOk()
+        );
+        assertEquals("budi", getContact(contact.getId()).getFirstName());
+
+        assertTrue(meterRegistry.get("cache.gets").tag("cache", "contacts").tag("result", "hit").functionCounter().count() > 0);
+    }
+
+    private ContactResponse getContact(String id) throws Exception {
+        String body = mockMvc.perform(
+                get("/api/contacts/" + id)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN", "test")
+        ).andExpectAll(
+                status().isOk()
+        ).andReturn().getResponse().getContentAsString();
+
+        WebResponse<ContactResponse> response = objectMapper.readValue(body, new TypeReference<>() {
+        });
+        return response.getData();
+    }
+
+    @Test
+    void getContactNotModified()  throws Exception {
+        User user = userRepository.findById("test").orElse(null);
+
+        Contact contact = new Contact();
+        contact.setUser(user);
+        contact.setId(UUID.randomUUID().toString());
+        contact.setFirstName("dada");
+        contactRepository.save(contact);
+
+        String eTag = mockMvc.perform(
+                get("/api/contacts/" + contact.getId())
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN", "test")
+        ).andExpectAll(
+                status().isOk(),
+                header().exists("ETag")
+        ).andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(
+                get("/api/contacts/" + contact.getId())
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN", "test")
+                        .header("If-None-Match", eTag)
+        ).andExpectAll(
+                status().isNotModified(),
+                content().string("")
+        );
+
+        UpdateContactRequest request = new UpdateContactRequest();
+        request.setFirstName("budi");
+
+        mockMvc.perform(
+                put("/api/contacts/" + contact.getId())
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request))
+                        .header("X-API-TOKEN", "test")
+                        .header("If-Match", eTag)
+        ).andExpectAll(
+                status().isOk()
+        );
+
+        mockMvc.perform(
+                put("/api/contacts/" + contact.getId())
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request))
+                        .header("X-API-TOKEN", "test")
+                        .header("If-Match", eTag)
+        ).andExpectAll(
+                status().isPreconditionFailed()
+        );
+
+        mockMvc.perform(
+                get("/api/contacts/" + contact.getId())
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN", "test")
+                        .header("If-None-Match", eTag)
+        ).andExpectAll(
+                status().isOk()
+        );
+    }
+
     @Test
     void updateContactBadRequest()  throws Exception {
         UpdateContactRequest request = new UpdateContactRequest();
@@ -321,6 +471,31 @@ class ContactControllerTest {
         );
     }
 
+    @Test
+    void searchRecordsSqlStats()  throws Exception {
+        mockMvc.perform(
+                get("/api/contacts")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN","test")
+        ).andExpectAll(
+                status().isOk()
+        );
+
+        var statements = meterRegistry.get("db.request.statements")
+                .tag("method", "GET")
+                .tag("uri", "/api/contacts")
+                .summary();
+        assertTrue(statements.count() > 0);
+        assertTrue(statements.totalAmount() > 0);
+        assertTrue(meterRegistry.get("db.statement").tag("type", "select").timer().count() > 0);
+        // sub-millisecond statements must still add up to something
+        assertTrue(meterRegistry.get("db.statement").tag("type", "select").timer().totalTime(TimeUnit.NANOSECONDS) > 0);
+        assertTrue(meterRegistry.get("db.request.time").tag("method", "GET").tag("uri", "/api/contacts").timer()
+                .totalTime(TimeUnit.NANOSECONDS) > 0);
+        assertTrue(meterRegistry.get("http.server.requests").tag("handler", "ContactController.search").timer().count() > 0);
+        assertNotNull(meterRegistry.find("hikaricp.connections.usage").timer());
+    }
+
     @Test
     void searchSuccess()  throws Exception {
         User user = userRepository.findById("test").orElse(null);
@@ -449,4 +624,401 @@ class ContactControllerTest {
         });
 
     }
+
+    @Test
+    void searchWithCursor()  throws Exception {
+        User user = userRepository.findById("test").orElse(null);
+
+        for(int i = 0 ; i<25;i++ ){
+            Contact contact = new Contact();
+            contact.setUser(user);
+            contact.setId(UUID.randomUUID().toString());
+            contact.setFirstName("dada"+i);
+            contact.setLastName("salah");
+            contact.setEmail("salah@example.com");
+            contact.setPhone("921838219");
+            contactRepository.save(contact);
+        }
+
+        List<String> ids = new ArrayList<>();
+        String cursor = "";
+        for (int page = 0; cursor != null; page++) {
+            String body = mockMvc.perform(
+                    get("/api/contacts")
+                            .queryParam("name", "dada")
+                            .queryParam("cursor", cursor)
+                            .accept(MediaType.APPLICATION_JSON)
+                            .header("X-API-TOKEN", "test")
+            ).andExpectAll(
+                    status().isOk()
+            ).andReturn().getResponse().getContentAsString();
+
+            WebResponse<List<ContactResponse>> response = objectMapper.readValue(body, new TypeReference<>() {
+            });
+            assertNull(response.getErrors());
+            assertNull(response.getPaging().getTotalPage());
+            assertEquals(page < 2 ? 10 : 5, response.getData().size());
+            response.getData().forEach(contact -> ids.add(contact.getId()));
+            cursor = response.getPaging().getNextCursor();
+        }
+
+        assertEquals(25, ids.size());
+        assertEquals(ids.stream().sorted().toList(), ids);
+    }
+
+    @Test
+    void searchInvalidCursor()  throws Exception {
+        mockMvc.perform(
+                get("/api/contacts")
+                        .queryParam("cursor", "not a cursor")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN", "test")
+        ).andExpectAll(
+                status().isBadRequest()
+        ).andDo(result -> {
+            WebResponse<String> response = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+            });
+            assertNotNull(response.getErrors());
+        });
+    }
+
+    @Test
+    void searchCountMode()  throws Exception {
+        User user = userRepository.findById("test").orElse(null);
+
+        for(int i = 0 ; i<25;i++ ){
+            Contact contact = new Contact();
+            contact.setUser(user);
+            contact.setId(UUID.randomUUID().toString());
+            contact.setFirstName("dada"+i);
+            contact.setLastName("salah");
+            contact.setEmail("salah@example.com");
+            contact.setPhone("921838219");
+            contactRepository.save(contact);
+        }
+
+        mockMvc.perform(
+                get("/api/contacts")
+                        .queryParam("count", "none")
+                        .queryParam("page", "2")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN", "test")
+        ).andExpectAll(
+                status().isOk()
+        ).andDo(result -> {
+            WebResponse<List<ContactResponse>> response = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+            });
+            assertNull(response.getErrors());
+            assertEquals(5, response.getData().size());
+            assertNull(response.getPaging().getTotalPage());
+            assertEquals(2, response.getPaging().getCurrentPage());
+            assertEquals("none", response.getPaging().getCountMode());
+        });
+
+        mockMvc.perform(
+                get("/api/contacts")
+                        .queryParam("count", "estimate")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN", "test")
+        ).andExpectAll(
+                status().isOk()
+        ).andDo(result -> {
+            WebResponse<List<ContactResponse>> response = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+            });
+            assertNull(response.getErrors());
+            assertEquals(10, response.getData().size());
+            assertEquals(3, response.getPaging().getTotalPage());
+            assertEquals("estimate", response.getPaging().getCountMode());
+        });
+
+        mockMvc.perform(
+                get("/api/contacts")
+                        .queryParam("count", "salah")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN", "test")
+        ).andExpectAll(
+                status().isBadRequest()
+        );
+    }
+
+    @Test
+    void searchPrefixAndSuffix()  throws Exception {
+        User user = userRepository.findById("test").orElse(null);
+
+        String[][] values = {
+                {"Budi@Example.com", "0812-3456-7890"},
+                {"dada@example.com", "+62 812 3456 0000"},
+                {"salah@example.com", "021 7890 1234"}
+        };
+        for (String[] value : values) {
+            Contact contact = new Contact();
+            contact.setUser(user);
+            contact.setId(UUID.randomUUID().toString());
+            contact.setFirstName("dada");
+            contact.setEmail(value[0]);
+            contact.setPhone(value[1]);
+            contactRepository.save(contact);
+        }
+
+        assertSearchSize("email", "budi*", 1);
+        assertSearchSize("email", "*example.com", 3);
+        assertSearchSize("email", "*DADA@Example.com", 1);
+        assertSearchSize("email", "*_example.com", 0);
+        assertSearchSize("phone", "0812*", 1);
+        assertSearchSize("phone", "*7890", 1);
+        assertSearchSize("phone", "*34-56 0000", 1);
+        assertSearchSize("phone", "7890", 2);
+    }
+
+    @Test
+    void searchJsonFields()  throws Exception {
+        User user = userRepository.findById("test").orElse(null);
+
+        Contact contact = new Contact();
+        contact.setUser(user);
+        contact.setId(UUID.randomUUID().toString());
+        contact.setFirstName("dada");
+        contact.setEmail("dada@example.com");
+        contact.setPhone("921838219");
+        contactRepository.save(contact);
+
+        mockMvc.perform(
+                get("/api/contacts")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN", "test")
+        ).andExpectAll(
+                status().isOk()
+        ).andDo(result -> {
+            JsonNode body = objectMapper.readTree(result.getResponse().getContentAsString());
+            assertEquals(Set.of("data", "paging"), fieldNames(body));
+            assertEquals(Set.of("id", "firstName", "email", "phone"), fieldNames(body.get("data").get(0)));
+            assertEquals(Set.of("currentPage", "totalPage", "size", "countMode"), fieldNames(body.get("paging")));
+            assertEquals(contact.getId(), body.get("data").get(0).get("id").asText());
+            assertEquals("exact", body.get("paging").get("countMode").asText());
+        });
+    }
+
+    private static Set<String> fieldNames(JsonNode node) {
+        Set<String> names = new TreeSet<>();
+        node.fieldNames().forEachRemaining(names::add);
+        return names;
+    }
+
+    @Test
+    void searchSuffixAfterBackfill()  throws Exception {
+        User user = userRepository.findById("test").orElse(null);
+
+        Contact contact = new Contact();
+        contact.setUser(user);
+        contact.setId(UUID.randomUUID().toString());
+        contact.setFirstName("dada");
+        contact.setEmail("Budi@Example.com");
+        contactRepository.save(contact);
+        // a row written before the column existed
+        jdbcTemplate.update("update contacts set email_lower_reversed = null where id = ?", contact.getId());
+        assertSearchSize("email", "*example.com", 0);
+
+        contactNormalizationJob.backfill();
+
+        assertSearchSize("email", "*example.com", 1);
+    }
+
+    private void assertSearchSize(String param, String value, int size) throws Exception {
+        mockMvc.perform(
+                get("/api/contacts")
+                        .queryParam(param, value)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN", "test")
+        ).andExpectAll(
+                status().isOk()
+        ).andDo(result -> {
+            WebResponse<List<ContactResponse>> response = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+            });
+            assertNull(response.getErrors());
+            assertEquals(size, response.getData().size(), param + "=" + value);
+        });
+    }
+
+    @Test
+    void importContacts()  throws Exception {
+        List<ImportContactRequest> requests = List.of(
+                ImportContactRequest.builder().firstName("Budi").email("budi@example.com").phone("0812-3456")
+                        .addresses(List.of(ImportAddressRequest.builder().city("Jakarta").country("Indonesia").build()))
+                        .build(),
+                ImportContactRequest.builder().firstName("").email("salah").build(),
+                ImportContactRequest.builder().firstName("Dada").build()
+        );
+
+        mockMvc.perform(
+                post("/api/contacts/import")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(requests))
+                        .header("X-API-TOKEN", "test")
+        ).andExpectAll(
+                status().isOk()
+        ).andDo(result -> {
+            WebResponse<List<ImportContactResponse>> response = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+            });
+            assertNull(response.getErrors());
+            assertEquals(3, response.getData().size());
+
+            assertNotNull(response.getData().get(0).getId());
+            assertNull(response.getData().get(0).getErrors());
+            assertNull(response.getData().get(1).getId());
+            assertNotNull(response.getData().get(1).getErrors());
+            assertEquals(2, response.getData().get(2).getIndex());
+
+            Contact contact = contactRepository.findById(response.getData().get(0).getId()).orElseThrow();
+            assertEquals("08123456", contact.getPhoneDigits());
+            assertEquals(1, addressRepository.findAllByUsernameAndContactId("test", contact.getId()).size());
+        });
+
+        assertEquals(2, contactRepository.count());
+    }
+
+    @Test
+    void importContactsInvalidAddresses()  throws Exception {
+        List<ImportAddressRequest> tooMany = new ArrayList<>();
+        for (int i = 0; i < 101; i++) {
+            tooMany.add(ImportAddressRequest.builder().country("Indonesia").build());
+        }
+        List<ImportContactRequest> requests = List.of(
+                ImportContactRequest.builder().firstName("Budi").addresses(Arrays.asList((ImportAddressRequest) null)).build(),
+                ImportContactRequest.builder().firstName("Dada").addresses(tooMany).build(),
+                ImportContactRequest.builder().firstName("Salah").build()
+        );
+
+        mockMvc.perform(
+                post("/api/contacts/import")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(requests))
+                        .header("X-API-TOKEN", "test")
+        ).andExpectAll(
+                status().isOk()
+        ).andDo(result -> {
+            WebResponse<List<ImportContactResponse>> response = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+            });
+            assertNull(response.getErrors());
+            assertEquals(3, response.getData().size());
+            assertNotNull(response.getData().get(0).getErrors());
+            assertNotNull(response.getData().get(1).getErrors());
+            assertNotNull(response.getData().get(2).getId());
+        });
+
+        assertEquals(1, contactRepository.count());
+    }
+
+    @Test
+    void importContactsBadRequest()  throws Exception {
+        mockMvc.perform(
+                post("/api/contacts/import")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"firstName\": \"Budi\"}")
+                        .header("X-API-TOKEN", "test")
+        ).andExpectAll(
+                status().isBadRequest()
+        );
+    }
+
+    @Test
+    void rateLimitedWhenRotatingTokens() throws Exception {
+        CreateContactRequest request = new CreateContactRequest();
+        request.setFirstName("Eko");
+
+        // write budget is 120 a minute per IP, made-up tokens do not get a bucket of their own;
+        // allow for the few requests refilled while the loop runs
+        MvcResult result = null;
+        for (int i = 0; i < 200; i++) {
+            result = mockMvc.perform(
+                    post("/api/contacts")
+                            .accept(MediaType.APPLICATION_JSON)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(request))
+                            .header("X-API-TOKEN", UUID.randomUUID().toString())
+            ).andReturn();
+            if (result.getResponse().getStatus() != 401) {
+                break;
+            }
+        }
+
+        assertEquals(429, result.getResponse().getStatus());
+        assertNotNull(result.getResponse().getHeader("Retry-After"));
+    }
+
+    @Test
+    void importContactsStopsAtInvalidRow()  throws Exception {
+        // the first 1000 rows are committed as their own chunk before the invalid one is read
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < 1001; i++) {
+            body.append("{\"firstName\": \"Budi ").append(i).append("\"},");
+        }
+        body.append("{\"firstName\": {\"salah\": true}},");
+        body.append("{\"firstName\": \"Sesudah\"}]");
+
+        mockMvc.perform(
+                post("/api/contacts/import")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body.toString())
+                        .header("X-API-TOKEN", "test")
+        ).andExpectAll(
+                status().isOk()
+        ).andDo(result -> {
+            WebResponse<List<ImportContactResponse>> response = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+            });
+            assertEquals(1002, response.getData().size());
+            assertTrue(response.getData().subList(0, 1001).stream().allMatch(row -> row.getId() != null));
+
+            ImportContactResponse stopped = response.getData().get(1001);
+            assertEquals(1001, stopped.getIndex());
+            assertNull(stopped.getId());
+            assertNotNull(stopped.getErrors());
+        });
+
+        assertEquals(1001, contactRepository.count());
+    }
+
+    @Test
+    void exportContacts()  throws Exception {
+        User user = userRepository.findById("test").orElse(null);
+
+        for(int i = 0 ; i<3;i++ ){
+            Contact contact = new Contact();
+            contact.setUser(user);
+            contact.setId("test-" + i);
+            contact.setFirstName("dada"+i);
+            contactRepository.save(contact);
+
+            for (int j = 0; j < i; j++) {
+                Address address = new Address();
+                address.setId("test-" + i + "-" + j);
+                address.setContact(contact);
+                address.setCountry("Indonesia");
+                addressRepository.save(address);
+            }
+        }
+
+        MvcResult result = mockMvc.perform(
+                get("/api/contacts/export")
+                        .accept(MediaType.APPLICATION_NDJSON)
+                        .header("X-API-TOKEN", "test")
+        ).andExpect(request().asyncStarted()).andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpectAll(
+                        status().isOk(),
+                        content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                ).andReturn().getResponse().getContentAsString();
+
+        List<String> lines = body.lines().toList();
+        assertEquals(3, lines.size());
+        for (int i = 0; i < 3; i++) {
+            ExportContactResponse contact = objectMapper.readValue(lines.get(i), ExportContactResponse.class);
+            assertEquals("test-" + i, contact.getId());
+            assertEquals(i, contact.getAddresses().size());
+        }
+    }
 }
\ No newline at end of file
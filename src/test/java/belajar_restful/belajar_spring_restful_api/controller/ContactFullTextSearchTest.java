@@ -0,0 +1,168 @@
+package belajar_restful.belajar_spring_restful_api.controller;
+
+import belajar_restful.belajar_spring_restful_api.entity.Contact;
+import belajar_restful.belajar_spring_restful_api.entity.User;
+import belajar_restful.belajar_spring_restful_api.model.ContactResponse;
+import belajar_restful.belajar_spring_restful_api.model.WebResponse;
+import belajar_restful.belajar_spring_restful_api.repository.AddressRepository;
+import belajar_restful.belajar_spring_restful_api.repository.ContactRepository;
+import belajar_restful.belajar_spring_restful_api.repository.UserRepository;
+import belajar_restful.belajar_spring_restful_api.security.BCrypt;
+import belajar_restful.belajar_spring_restful_api.security.RateLimitFilter;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// needs MySQL: MariaDB and other servers have no ngram parser, the test is skipped there
+@SpringBootTest(properties = "app.contact-search.engine=fulltext")
+@AutoConfigureMockMvc
+class ContactFullTextSearchTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ContactRepository contactRepository;
+
+    @Autowired
+    private AddressRepository addressRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private RateLimitFilter rateLimitFilter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        Integer ngram = jdbcTemplate.queryForObject(
+                "select count(*) from information_schema.plugins where plugin_name = 'ngram' and plugin_status = 'ACTIVE'",
+                Integer.class);
+        assumeTrue(ngram != null && ngram > 0, "no ngram fulltext parser on this server");
+        createFullTextIndexes();
+
+        rateLimitFilter.reset();
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+        addressRepository.deleteAll();
+        contactRepository.deleteAll();
+        userRepository.deleteAll();
+
+        User user = new User();
+        user.setUsername("test");
+        user.setName("test");
+        user.setToken("test");
+        user.setPassword(BCrypt.hashpw("rahasia", BCrypt.gensalt()));
+        user.setTokenExpiredAt(System.currentTimeMillis() + 1000000L);
+        userRepository.save(user);
+    }
+
+    @Test
+    void searchMatchesLike() throws Exception {
+        User user = userRepository.findById("test").orElse(null);
+
+        String[][] values = {
+                {"dada", "salah", "dada@example.com", "0812-3456-7890"},
+                {"Budi", "Santoso", "budi.santoso@example.co.id", "+62 812 3456 0000"},
+                {"Ani", null, "ani@mail.com", "021 7890 1234"},
+                {"Salahuddin", "Ahmad", null, null},
+                {"ida", "adadi", "ida@example.com", "0812"}
+        };
+        for (String[] value : values) {
+            Contact contact = new Contact();
+            contact.setUser(user);
+            contact.setId(UUID.randomUUID().toString());
+            contact.setFirstName(value[0]);
+            contact.setLastName(value[1]);
+            contact.setEmail(value[2]);
+            contact.setPhone(value[3]);
+            contactRepository.save(contact);
+        }
+
+        // stopwords would drop every bigram containing "a" or "i" from the index
+        for (String term : List.of("da", "dada", "ad", "sal", "SALAH", "an", "budi", "hmad", "zz")) {
+            assertSameAsLike("name", term, "first_name like ? or last_name like ?");
+        }
+        for (String term : List.of("da", "example", "mail", "santoso", "co", "com")) {
+            assertSameAsLike("email", term, "email like ?");
+        }
+        for (String term : List.of("08", "0812", "3456", "789", "62")) {
+            assertSameAsLike("phone", term, "phone like ?");
+        }
+    }
+
+    private void assertSameAsLike(String param, String term, String condition) throws Exception {
+        String pattern = "%" + term + "%";
+        Object[] args = condition.contains(" or ") ? new Object[]{pattern, pattern} : new Object[]{pattern};
+        Set<String> expected = new HashSet<>(jdbcTemplate.queryForList(
+                "select id from contacts where username = 'test' and (" + condition + ")", String.class, args));
+
+        mockMvc.perform(
+                get("/api/contacts")
+                        .queryParam(param, term)
+                        .queryParam("size", "100")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("X-API-TOKEN", "test")
+        ).andExpectAll(
+                status().isOk()
+        ).andDo(result -> {
+            WebResponse<List<ContactResponse>> response = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+            });
+            assertNull(response.getErrors());
+            Set<String> actual = response.getData().stream().map(ContactResponse::getId).collect(Collectors.toSet());
+            assertEquals(expected, actual, param + "=" + term);
+        });
+    }
+
+    // same indexes as database.sql, stopwords off on the connection that builds them
+    private void createFullTextIndexes() {
+        Integer existing = jdbcTemplate.queryForObject("""
+                select count(distinct index_name) from information_schema.statistics
+                where table_schema = database() and table_name = 'contacts' and index_type = 'FULLTEXT'
+                """, Integer.class);
+        if (existing != null && existing == 3) {
+            return;
+        }
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("set session innodb_ft_enable_stopword = OFF");
+                statement.execute("""
+                        alter table contacts
+                            add fulltext index ft_contacts_name (first_name, last_name) with parser ngram,
+                            add fulltext index ft_contacts_email (email) with parser ngram,
+                            add fulltext index ft_contacts_phone (phone) with parser ngram
+                        """);
+            }
+            return null;
+        });
+    }
+}
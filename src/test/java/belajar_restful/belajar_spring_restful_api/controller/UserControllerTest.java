@@ -7,6 +7,8 @@ import belajar_restful.belajar_spring_restful_api.model.UserResponse;
 import belajar_restful.belajar_spring_restful_api.model.WebResponse;
 import belajar_restful.belajar_spring_restful_api.repository.UserRepository;
 import belajar_restful.belajar_spring_restful_api.security.BCrypt;
+import belajar_restful.belajar_spring_restful_api.security.RateLimitFilter;
+import belajar_restful.belajar_spring_restful_api.security.SessionCache;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -39,9 +41,17 @@ class UserControllerTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private SessionCache sessionCache;
+
+    @Autowired
+    private RateLimitFilter rateLimitFilter;
+
     @BeforeEach
     void setUp() {
+        rateLimitFilter.reset();
         userRepository.deleteAll();
+        sessionCache.invalidateAll();
     }
 
     @Test
@@ -0,0 +1,74 @@
+package belajar_restful.belajar_spring_restful_api.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BCryptTest {
+
+    // produced by the implementation before the key schedule was made reusable
+    private static final String[][] VECTORS = {
+            {"", "$2a$04$pFUTq39uCbqvhlugya1zb.", "$2a$04$pFUTq39uCbqvhlugya1zb.LbVC7.Sd7mgIHN.53aL2y6b9EaPGtwK"},
+            {"a", "$2b$05$aulkMVLLqHoFMDcMYTmure", "$2b$05$aulkMVLLqHoFMDcMYTmure9UMJvPYimiYjlWVban0hHIVi9R7ooM2"},
+            {"rahasia", "$2y$06$m3fvJLbdwoXgmIti200Aue", "$2y$06$m3fvJLbdwoXgmIti200Aue9UTKaohfhz6BED7paPIGZ3199qkWjoO"},
+            {"abcdefghijklmnopqrstuvwxyz", "$2a$04$b.rm6bPvxQY.sRVkhxaLYO", "$2a$04$b.rm6bPvxQY.sRVkhxaLYOUl8TDwfL9VSZH9cKXE/1fkybdVOCD9."},
+            {"~!@#$%^&*()      ~!@#$%^&*()PNBFRD", "$2b$05$u0F7z3a1be4i.kH9B34CXO", "$2b$05$u0F7z3a1be4i.kH9B34CXO7Gc/5DcKK2JU4pE4tB07jqG72uzRyYy"},
+            {"éè päss ☃", "$2y$06$UeCGuz01q27qfiK1ldy04u", "$2y$06$UeCGuz01q27qfiK1ldy04ulz/Vu02x96jIVdzWbwXZQKO.tzsoGSO"},
+            {"U*U", "$2a$05$CCCCCCCCCCCCCCCCCCCCC.", "$2a$05$CCCCCCCCCCCCCCCCCCCCC.E5YPO9kmyuRGyh0XouQYb4YMJKvyOeW"},
+            {"rahasia", "$2$05$CCCCCCCCCCCCCCCCCCCCC.", "$2$05$CCCCCCCCCCCCCCCCCCCCC.aVxy26t0i65yQvDTZTIyUJEfv90BLme"},
+    };
+
+    // 8-bit passwords exercising the $2x$ sign extension bug and the $2a$ safety measure
+    private static final String[][] LATIN1_VECTORS = {
+            {"£ÿ£ÿ", "$2x$05$/OK.fbVrR/bpIqNJ5ianF.", "$2x$05$/OK.fbVrR/bpIqNJ5ianF.kIDPnp4lRuHCLBRqM0K5AFprCsCr1ca"},
+            {"£ÿ£ÿ", "$2a$05$/OK.fbVrR/bpIqNJ5ianF.", "$2a$05$/OK.fbVrR/bpIqNJ5ianF.Up3P7D9a2vo0OiobBhjQBWoGUhHf8Gq"},
+            {"£ÿ£ÿ", "$2b$05$/OK.fbVrR/bpIqNJ5ianF.", "$2b$05$/OK.fbVrR/bpIqNJ5ianF.Up3P7D9a2vo0OiobBhjQBWoGUhHf8Gq"},
+    };
+
+    @Test
+    void hashpwMatchesKnownVectors() {
+        for (String[] vector : VECTORS) {
+            assertEquals(vector[2], BCrypt.hashpw(vector[0], vector[1]));
+            assertEquals(vector[2], BCrypt.hashpw(vector[0].toCharArray(), vector[1]));
+            assertTrue(BCrypt.checkpw(vector[0], vector[2]));
+            assertTrue(BCrypt.checkpw(vector[0].toCharArray(), vector[2]));
+            assertFalse(BCrypt.checkpw(vector[0] + "x", vector[2]));
+        }
+    }
+
+    @Test
+    void hashpwMatchesKnownLatin1Vectors() {
+        for (String[] vector : LATIN1_VECTORS) {
+            byte[] password = vector[0].getBytes(StandardCharsets.ISO_8859_1);
+            assertEquals(vector[2], BCrypt.hashpw(password, vector[1]));
+            assertTrue(BCrypt.checkpw(password, vector[2]));
+        }
+    }
+
+    @Test
+    void hashpwIsRepeatableOnSameThread() {
+        String salt = BCrypt.gensalt(4);
+        String first = BCrypt.hashpw("rahasia", salt);
+        BCrypt.hashpw("something else", BCrypt.gensalt(5));
+
+        assertEquals(first, BCrypt.hashpw("rahasia", salt));
+    }
+
+    @Test
+    void gensaltFormat() {
+        String salt = BCrypt.gensalt("$2b", 7);
+
+        assertEquals(29, salt.length());
+        assertTrue(salt.startsWith("$2b$07$"));
+        assertEquals(60, BCrypt.hashpw("rahasia", salt).length());
+    }
+
+    @Test
+    void hashpwInvalidSalt() {
+        assertThrows(IllegalArgumentException.class, () -> BCrypt.hashpw("rahasia", "$2a$04$tooshort"));
+        assertThrows(IllegalArgumentException.class, () -> BCrypt.hashpw("rahasia", "$3a$04$CCCCCCCCCCCCCCCCCCCCC."));
+        assertThrows(IllegalArgumentException.class, () -> BCrypt.hashpw("rahasia", "$2a$03$CCCCCCCCCCCCCCCCCCCCC."));
+    }
+}
@@ -0,0 +1,52 @@
+package belajar_restful.belajar_spring_restful_api.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// a real server, MockMvc does not run Tomcat's valves so it cannot see X-Forwarded-For handling
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class RateLimitFilterTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private RateLimitFilter rateLimitFilter;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeEach
+    void setUp() {
+        rateLimitFilter.reset();
+    }
+
+    @Test
+    void clientsBehindProxyHaveTheirOwnBucket() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            assertEquals(401, login("203.0.113.1"));
+        }
+        assertEquals(429, login("203.0.113.1"));
+
+        assertEquals(401, login("203.0.113.2"));
+    }
+
+    // the test client connects from loopback, which is a trusted internal proxy
+    private int login(String forwardedFor) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/auth/login"))
+                .header("Content-Type", "application/json")
+                .header("X-Forwarded-For", forwardedFor)
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"test\",\"password\":\"test\"}"))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
@@ -0,0 +1,57 @@
+package belajar_restful.belajar_spring_restful_api.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UuidV7Test {
+
+    @Test
+    void versionAndVariant() {
+        for (int i = 0; i < 1000; i++) {
+            UUID uuid = UUID.fromString(UuidV7.generate());
+            assertEquals(7, uuid.version());
+            // variant bits 10xx
+            assertEquals(2, uuid.variant());
+            assertEquals(0x8000000000000000L, uuid.getLeastSignificantBits() & 0xC000000000000000L);
+        }
+    }
+
+    @Test
+    void timestampIsCurrentMillis() {
+        long before = System.currentTimeMillis();
+        UUID uuid = UuidV7.uuid();
+        long after = System.currentTimeMillis();
+
+        long timestamp = uuid.getMostSignificantBits() >>> 16;
+        assertTrue(timestamp >= before);
+        // the counter may have borrowed a few milliseconds from earlier tests
+        assertTrue(timestamp <= after + 50);
+    }
+
+    @Test
+    void increasingWithinSameMillisecond() {
+        // far more ids than one millisecond takes, so many share a timestamp
+        String previous = UuidV7.generate();
+        for (int i = 0; i < 20_000; i++) {
+            String next = UuidV7.generate();
+            assertTrue(next.compareTo(previous) > 0, previous + " >= " + next);
+            previous = next;
+        }
+    }
+
+    @Test
+    void increasingAcrossMilliseconds() throws InterruptedException {
+        String previous = UuidV7.generate();
+        for (int i = 0; i < 5; i++) {
+            Thread.sleep(2);
+            String next = UuidV7.generate();
+            assertTrue(next.compareTo(previous) > 0, previous + " >= " + next);
+            assertTrue(UUID.fromString(next).getMostSignificantBits() >>> 16
+                    > UUID.fromString(previous).getMostSignificantBits() >>> 16);
+            previous = next;
+        }
+    }
+}